@@ -3,15 +3,83 @@ package com.consultation;
 import com.consultation.controller.ConsultationController;
 import com.consultation.view.ConsultationGUI;
 import com.consultation.util.DataInitializer;
+import com.consultation.util.Log;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import javax.swing.SwingUtilities;
 
+/**
+ * Startup is picked with {@code -Dconsultation.startup}:
+ * journal (default) recovers from {@code consultation.journal} and journals every change;
+ * snapshot loads {@code consultation.snapshot} and saves it again on exit.
+ * Either way the demo data is only created when there was nothing to load.
+ */
 public class Main {
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            ConsultationController controller = new ConsultationController();
+        // Loading can take a while, so it runs here rather than on the EDT
+        ConsultationController controller = new ConsultationController();
+        boolean loaded = System.getProperty("consultation.startup", "journal").equals("snapshot")
+            ? loadSnapshot(controller)
+            : openJournal(controller);
+        if (!loaded) {
             DataInitializer.initializeData(controller);
+        }
+        SwingUtilities.invokeLater(() -> {
             ConsultationGUI gui = new ConsultationGUI(controller);
             gui.setVisible(true);
         });
     }
-} 
\ No newline at end of file
+
+    // Recover from the journal; returns whether there was anything to recover
+    private static boolean openJournal(ConsultationController controller) {
+        Path journalFile = Paths.get(System.getProperty("consultation.journal", "consultation.journal"));
+        try {
+            boolean recovered = controller.openJournal(journalFile);
+            Runtime.getRuntime().addShutdownHook(new Thread(controller::close, "journal-close"));
+            return recovered;
+        } catch (IOException e) {
+            Log.error("Could not open journal " + journalFile + ", running without one: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Load the snapshot if there is one; returns whether it was loaded. The state is saved
+    // back on exit only once the file has been read or found missing, so a snapshot that
+    // could not be read is never overwritten: it is moved aside first, and if that fails
+    // nothing is saved.
+    private static boolean loadSnapshot(ConsultationController controller) {
+        Path snapshotFile = Paths.get(System.getProperty("consultation.snapshot", "consultation.snapshot"));
+        boolean loaded = false;
+        if (Files.exists(snapshotFile)) {
+            try {
+                long start = System.nanoTime();
+                controller.loadSnapshot(snapshotFile);
+                Log.info(() -> "Snapshot " + snapshotFile + " loaded in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                loaded = true;
+            } catch (IOException e) {
+                Log.error("Could not load snapshot " + snapshotFile + ": " + e.getMessage());
+                Path corrupt = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".corrupt");
+                try {
+                    Files.move(snapshotFile, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                    Log.warn("Moved the unreadable snapshot to " + corrupt);
+                } catch (IOException moveFailed) {
+                    Log.error("Could not move " + snapshotFile + " aside, changes will not be saved: "
+                        + moveFailed.getMessage());
+                    return false;
+                }
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            controller.close(); // Delivers the queued notifications, so they are saved too
+            try {
+                controller.saveSnapshot(snapshotFile);
+            } catch (IOException e) {
+                Log.error("Could not save snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }, "snapshot-save"));
+        return loaded;
+    }
+}
@@ -0,0 +1,53 @@
+package com.consultation.controller;
+
+import com.consultation.model.Appointment;
+
+/**
+ * A change made through the controller, as handed to the listeners registered for the
+ * users it concerns (see ConsultationController.addChangeListener).
+ */
+public class ChangeEvent {
+    public enum Type {
+        APPOINTMENT_CREATED,
+        STATUS_CHANGED, // Cancelled, missed or set through updateAppointmentStatus
+        DEQUEUED, // Taken off the queue and started
+        RESCHEDULED,
+        PRIORITY_CHANGED,
+        APPOINTMENT_REMOVED,
+        NOTIFICATION_ADDED,
+        RELOADED // The whole state was replaced (loadSnapshot); refetch everything
+    }
+
+    // Runs on the thread that made the change, possibly while controller locks are held:
+    // must be quick and must not call back into the controller
+    public interface Listener {
+        void onChange(ChangeEvent event);
+    }
+
+    private final Type type;
+    private final Appointment appointment; // Null for NOTIFICATION_ADDED and RELOADED
+    private final String username; // The recipient for NOTIFICATION_ADDED and RELOADED, else null
+
+    ChangeEvent(Type type, Appointment appointment, String username) {
+        this.type = type;
+        this.appointment = appointment;
+        this.username = username;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Appointment getAppointment() {
+        return appointment;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return type + (appointment != null ? " appointment " + appointment.getId() : " for " + username);
+    }
+}
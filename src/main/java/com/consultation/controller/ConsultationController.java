@@ -2,23 +2,79 @@ package com.consultation.controller;
 
 import com.consultation.model.User;
 import com.consultation.model.Appointment;
+import com.consultation.model.BookingRequest;
+import com.consultation.model.ProviderCalendar;
 import com.consultation.model.QueueManager;
 import com.consultation.model.TimeSlot;
 import com.consultation.model.Notification;
+import com.consultation.model.NotificationInbox;
+import com.consultation.util.Journal;
+import com.consultation.util.Log;
+import com.consultation.util.SnapshotReader;
+import com.consultation.util.SnapshotWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
+/**
+ * Safe for concurrent use. Queues, schedules and booking indexes of a professor/counselor
+ * are only touched while holding that provider's lock stripe, so operations on the same
+ * provider run one at a time while different providers proceed in parallel.
+ *
+ * With a journal open (see openJournal) every change is recorded there before it is made,
+ * and the state can be recovered after a restart by replaying it. A change that cannot be
+ * recorded is not made, and a changing call returns only once its records are on disk,
+ * sharing the fsync with the calls that finished alongside it. Once the journal has
+ * failed every further change is refused with an IllegalStateException. Notifications are
+ * journaled when they are delivered, and nothing waits for them.
+ *
+ * Changes are also reported to the change listeners of the users they concern (see
+ * addChangeListener).
+ */
 public class ConsultationController {
-    private Map<String, User> users;
-    private Map<String, QueueManager> queues;
-    private Map<String, Map<LocalDate, List<TimeSlot>>> professorSchedules;
-    private Map<Integer, Appointment> appointments;
-    private Map<String, List<Notification>> userNotifications;
-    private int nextAppointmentId;
-    private List<TimeSlot> timeSlots;
+    private final Map<String, User> users;
+    private final Map<String, QueueManager> queues;
+    private final Map<String, ProviderCalendar> professorSchedules;
+    private final Map<Integer, Appointment> appointments;
+    private final Map<String, NotificationInbox> inboxes; // Username -> most recent notifications
+    private final NotificationPipeline notificationPipeline; // Delivers into the inboxes off the caller's thread
+    private final Map<String, List<ChangeEvent.Listener>> changeListeners = new ConcurrentHashMap<>(); // Username -> listeners
+    private final Map<String, Set<Appointment>> studentAppointments; // Student username -> appointments by time
+    private final Map<String, NavigableSet<Appointment>> providerAppointments; // Professor/counselor username -> appointments by time
+    private final Set<Integer> slotHolders; // Ids of appointments that occupy their slot in the calendar
+    private final AtomicInteger nextAppointmentId;
+    private volatile int slotUnits; // Calendar units per slot in the current grid
+    private final ReentrantLock[] providerLocks; // Lock stripes, picked by professor/counselor username
+    private static final int LOCK_STRIPES = 64; // Must be a power of two
+    // Held shared by journaled changes that no provider lock covers (users, subjects,
+    // notifications) and exclusively by checkpoints, which also hold every provider lock
+    private final ReentrantReadWriteLock checkpointLock;
+    private volatile Journal journal; // Null until openJournal; replayed records are not journaled again
+    private final ThreadLocal<Recorded> lastRecorded = new ThreadLocal<>(); // See finishChange
+    private ExecutorService checkpointer;
+    private final AtomicBoolean checkpointScheduled;
+    private static final int CHECKPOINT_RECORDS = 10000; // Journal records appended between checkpoints
+    private static final int NOTIFICATION_QUEUE_CAPACITY = 4096; // Undelivered notifications before producers wait, unlocked
+    private static final int INBOX_CAPACITY = Integer.getInteger("consultation.inbox.capacity", 500); // Notifications kept per user
     private static final int MAX_APPOINTMENT_DURATION = 60; // Maximum appointment duration in minutes
     private static final int MIN_APPOINTMENT_DURATION = 15; // Minimum appointment duration in minutes
     private static final int TIME_SLOT_INTERVAL = 15; // Time slots are divided into 15-minute intervals
@@ -27,67 +83,104 @@ public class ConsultationController {
     private static final LocalTime WORKDAY_END = LocalTime.of(16, 0);
     private static final LocalTime LUNCH_START = LocalTime.of(12, 0);
     private static final LocalTime LUNCH_END = LocalTime.of(13, 0);
+    private static final long OPEN_UNITS = ProviderCalendar.unitMask(WORKDAY_START, LUNCH_START)
+        | ProviderCalendar.unitMask(LUNCH_END, WORKDAY_END);
+    private static final Comparator<Appointment> BY_TIME = Comparator
+        .comparing(Appointment::getAppointmentTime)
+        .thenComparingInt(Appointment::getId);
+
+    // Journal record types. Each operation records what it changed, so replay does not
+    // depend on the clock or on searching the schedules again.
+    private static final byte REC_USER = 1;
+    private static final byte REC_SUBJECT = 2;
+    private static final byte REC_GRID = 3;
+    private static final byte REC_ROLL = 4;
+    private static final byte REC_CREATE = 5;
+    private static final byte REC_CANCEL = 6;
+    private static final byte REC_NEXT = 7;
+    private static final byte REC_STATUS = 8;
+    private static final byte REC_MISSED = 9;
+    private static final byte REC_REMOVE = 10;
+    private static final byte REC_RESCHEDULE = 11;
+    private static final byte REC_PRIORITY = 12;
+    private static final byte REC_NOTIFY = 13;
+    // Only written by checkpoints
+    private static final byte REC_APPOINTMENT = 14;
+    private static final byte REC_QUEUED = 15;
+    private static final byte REC_NEXT_ID = 16;
+    // Inbox read state
+    private static final byte REC_MARK_READ = 17;
+    private static final byte REC_MARK_ALL_READ = 18;
+    private static final byte REC_INBOX = 19; // Checkpoint only
 
     public ConsultationController() {
-        users = new HashMap<>();
-        queues = new HashMap<>();
-        professorSchedules = new HashMap<>();
-        appointments = new HashMap<>();
-        userNotifications = new HashMap<>();
-        nextAppointmentId = 1;
+        users = new ConcurrentHashMap<>();
+        queues = new ConcurrentHashMap<>();
+        professorSchedules = new ConcurrentHashMap<>();
+        appointments = new ConcurrentHashMap<>();
+        inboxes = new ConcurrentHashMap<>();
+        notificationPipeline = new NotificationPipeline(NOTIFICATION_QUEUE_CAPACITY, this::deliverNotifications);
+        studentAppointments = new ConcurrentHashMap<>();
+        providerAppointments = new ConcurrentHashMap<>();
+        slotHolders = ConcurrentHashMap.newKeySet();
+        nextAppointmentId = new AtomicInteger(1);
+        providerLocks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            providerLocks[i] = new ReentrantLock();
+        }
+        checkpointLock = new ReentrantReadWriteLock();
+        checkpointScheduled = new AtomicBoolean();
         initializeTimeSlots();
     }
 
     private void initializeTimeSlots() {
-        System.out.println("\nInitializing time slots...");
+        lockAllProviders();
+        try {
+            // 15-minute slots
+            rebuildSchedules(1, LocalDate.now());
+        } finally {
+            unlockAllProviders();
+        }
+    }
+
+    // Caller must hold every provider lock. Starts the schedules over from the given day
+    // with slots of the given number of calendar units; later refreshes keep rolling with
+    // the same grid.
+    private void rebuildSchedules(int units, LocalDate today) {
+        Log.info("Initializing time slots...");
         professorSchedules.clear();
-        LocalDate today = LocalDate.now();
-        
-        for (int i = 0; i < MAX_DAYS_AHEAD; i++) {
-            LocalDate date = today.plusDays(i);
-            System.out.println("\nCreating slots for date: " + date);
-            
-            for (User user : users.values()) {
-                if (user.getRole().equals("PROFESSOR") || user.getRole().equals("COUNSELOR")) {
-                    System.out.println("Creating slots for " + user.getUsername());
-                    Map<LocalDate, List<TimeSlot>> schedule = professorSchedules
-                        .computeIfAbsent(user.getUsername(), k -> new HashMap<>());
-                    
-                    List<TimeSlot> slots = new ArrayList<>();
-                    LocalTime currentTime = WORKDAY_START;
-                    
-                    while (currentTime.isBefore(WORKDAY_END)) {
-                        // Skip lunch break
-                        if (currentTime.equals(LUNCH_START)) {
-                            currentTime = LUNCH_END;
-                            continue;
-                        }
-                        
-                        LocalTime endTime = currentTime.plusMinutes(TIME_SLOT_INTERVAL);
-                        if (endTime.isAfter(WORKDAY_END)) break;
-                        
-                        slots.add(new TimeSlot(currentTime, endTime, user));
-                        currentTime = endTime;
-                    }
-                    
-                    schedule.put(date, slots);
-                    System.out.println("Created " + slots.size() + " slots for " + user.getUsername());
-                }
+        slotHolders.clear();
+        slotUnits = units;
+        rollSchedules(today);
+        Log.info("Time slot initialization complete");
+    }
+
+    // Caller must hold every provider lock. Moves every calendar so the horizon of
+    // MAX_DAYS_AHEAD days starts on the given day. Days that stay in range keep their
+    // bookings, so a daily roll only clears the one new day.
+    private void rollSchedules(LocalDate today) {
+        for (User user : users.values()) {
+            if (user.getRole().equals("PROFESSOR") || user.getRole().equals("COUNSELOR")) {
+                professorSchedules
+                    .computeIfAbsent(user.getUsername(),
+                        k -> new ProviderCalendar(today, MAX_DAYS_AHEAD, OPEN_UNITS, slotUnits))
+                    .rollTo(today);
             }
         }
-        
-        timeSlots = new ArrayList<>(professorSchedules.values().stream()
-            .flatMap(schedule -> schedule.values().stream())
-            .flatMap(List::stream)
-            .toList());
-        System.out.println("Time slot initialization complete");
     }
 
     public void refreshTimeSlots() {
-        // Clean up old appointments and time slots
-        cleanupOldAppointments();
-        // Reinitialize time slots for the next MAX_DAYS_AHEAD days
-        initializeTimeSlots();
+        lockAllProviders();
+        try {
+            // Clean up old appointments, then roll the schedules forward to today
+            LocalDate today = LocalDate.now();
+            cleanupOldAppointments();
+            journal(REC_ROLL, today.toEpochDay()); // Replay rolls to this day, not the day it runs
+            rollSchedules(today);
+        } finally {
+            unlockAllProviders();
+        }
+        finishChange();
     }
 
     private void cleanupOldAppointments() {
@@ -96,68 +189,105 @@ public class ConsultationController {
         
         // Find appointments to remove
         for (Appointment appointment : appointments.values()) {
-            // Remove completed appointments older than 7 days
-            if (appointment.getStatus().equals("COMPLETED") && 
-                appointment.getAppointmentTime().plusDays(7).isBefore(now)) {
-                appointmentsToRemove.add(appointment.getId());
-            }
-            // Remove cancelled appointments and free up their time slots
-            else if (appointment.getStatus().equals("CANCELLED")) {
-                // Free up the time slot before removing the appointment
-                Map<LocalDate, List<TimeSlot>> schedule = professorSchedules
-                    .get(appointment.getProfessorOrCounselor().getUsername());
-                if (schedule != null) {
-                    LocalDate appointmentDate = appointment.getAppointmentTime().toLocalDate();
-                    List<TimeSlot> slots = schedule.get(appointmentDate);
-                    if (slots != null) {
-                        for (TimeSlot slot : slots) {
-                            if (slot.getAppointment() != null && 
-                                slot.getAppointment().getId() == appointment.getId()) {
-                                slot.removeAppointment();
-                                break;
-                            }
-                        }
-                    }
+            ReentrantLock lock = lockFor(appointment.getProfessorOrCounselor().getUsername());
+            lock.lock();
+            try {
+                // Remove completed appointments older than 7 days
+                if (appointment.getStatus().equals("COMPLETED") && 
+                    appointment.getAppointmentTime().plusDays(7).isBefore(now)) {
+                    appointmentsToRemove.add(appointment.getId());
                 }
-                appointmentsToRemove.add(appointment.getId());
-            }
-            // Handle missed appointments (no need to free up slots as time has passed)
-            else if (appointment.getStatus().equals("PENDING") && 
-                     appointment.getAppointmentTime().isBefore(now)) {
-                appointment.setStatus("MISSED");
-                createNotification(appointment.getStudent().getUsername(),
-                    "Your appointment for " + appointment.getSubject() + " was missed.");
-                createNotification(appointment.getProfessorOrCounselor().getUsername(),
-                    "Appointment with " + appointment.getStudent().getName() + " was missed.");
+                // Remove cancelled appointments; their time slots are freed on removal
+                else if (appointment.getStatus().equals("CANCELLED")) {
+                    appointmentsToRemove.add(appointment.getId());
+                }
+                // Missed appointments: free the slot so the calendar does not keep a stale booking
+                else if (appointment.getStatus().equals("PENDING") && 
+                         appointment.getAppointmentTime().isBefore(now)) {
+                    journal(REC_MISSED, appointment.getId());
+                    appointment.setStatus("MISSED");
+                    releaseSlot(appointment);
+                    fireAppointmentChange(ChangeEvent.Type.STATUS_CHANGED, appointment);
+                    queueNotification(appointment.getStudent().getUsername(),
+                        "Your appointment for " + appointment.getSubject() + " was missed.");
+                    queueNotification(appointment.getProfessorOrCounselor().getUsername(),
+                        "Appointment with " + appointment.getStudent().getName() + " was missed.");
+                }
+            } finally {
+                lock.unlock();
             }
         }
         
         // Remove the identified appointments
         for (Integer appointmentId : appointmentsToRemove) {
-            appointments.remove(appointmentId);
+            Appointment removed = appointments.get(appointmentId);
+            if (removed != null) {
+                ReentrantLock lock = lockFor(removed.getProfessorOrCounselor().getUsername());
+                lock.lock();
+                try {
+                    journal(REC_REMOVE, appointmentId);
+                    if (removed.getStatus().equals("CANCELLED")) releaseSlot(removed);
+                    appointments.remove(appointmentId);
+                    unindexAppointment(removed);
+                    fireAppointmentChange(ChangeEvent.Type.APPOINTMENT_REMOVED, removed);
+                } finally {
+                    lock.unlock();
+                }
+            }
         }
     }
 
     public User registerUser(String username, String password, String role, String name, String email) {
-        if (users.containsKey(username)) {
-            return null;
-        }
+        User user = addUser(username, password, role, name, email);
+        if (user != null) finishChange();
+        return user;
+    }
+
+    // Registers the user without waiting for the record, so replay and snapshot loading can
+    // call it while holding every lock; returns null if the name is taken
+    private User addUser(String username, String password, String role, String name, String email) {
         User user = new User(username, password, role, name, email);
-        users.put(username, user);
-        if (role.equals("PROFESSOR") || role.equals("COUNSELOR")) {
-            queues.put(username, new QueueManager());
+        checkpointLock.readLock().lock();
+        try {
+            // Claim the name first, so two registrations of it cannot both be recorded
+            if (users.putIfAbsent(username, user) != null) {
+                return null;
+            }
+            try {
+                journal(REC_USER, username, password, role, name, email);
+            } catch (RuntimeException e) {
+                users.remove(username, user);
+                throw e;
+            }
+            if (role.equals("PROFESSOR") || role.equals("COUNSELOR")) {
+                queues.put(username, new QueueManager());
+            }
+            return user;
+        } finally {
+            checkpointLock.readLock().unlock();
         }
-        return user;
+    }
+
+    // Adds a subject the professor teaches or the student is enrolled in
+    public void addSubject(User user, String subject) {
+        checkpointLock.readLock().lock();
+        try {
+            journal(REC_SUBJECT, user.getUsername(), subject);
+            user.addSubject(subject);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        finishChange();
     }
 
     public User login(String username, String password) {
         User user = users.get(username);
         if (user != null && user.getPassword().equals(password)) {
-            System.out.println("Login successful for user: " + username);
-            System.out.println("Total appointments in system: " + appointments.size());
+            Log.info(() -> "Login successful for user: " + username);
+            Log.debug(() -> "Total appointments in system: " + appointments.size());
             return user;
         }
-        System.out.println("Login failed for user: " + username);
+        Log.warn(() -> "Login failed for user: " + username);
         return null;
     }
 
@@ -166,20 +296,17 @@ public class ConsultationController {
     }
 
     public List<Appointment> getUserAppointments(User user) {
-        System.out.println("Getting appointments for user: " + user.getUsername());
-        System.out.println("Total appointments in system: " + appointments.size());
-        List<Appointment> userAppointments = new ArrayList<>();
-        for (Appointment appointment : appointments.values()) {
-            System.out.println("Checking appointment: " + appointment.getId() + 
-                " Student: " + appointment.getStudent().getUsername() + 
-                " Professor: " + appointment.getProfessorOrCounselor().getUsername());
-            if (appointment.getStudent().getUsername().equals(user.getUsername()) || 
-                appointment.getProfessorOrCounselor().getUsername().equals(user.getUsername())) {
-                userAppointments.add(appointment);
-                System.out.println("Added appointment to user's list");
+        Log.debug(() -> "Getting appointments for user: " + user.getUsername());
+        List<Appointment> userAppointments = new ArrayList<>(
+            studentAppointments.getOrDefault(user.getUsername(), Collections.emptySet()));
+        Set<Appointment> asProvider = providerAppointments.get(user.getUsername());
+        if (asProvider != null && !asProvider.isEmpty()) {
+            userAppointments.addAll(asProvider);
+            if (userAppointments.size() > asProvider.size()) {
+                userAppointments.sort(BY_TIME);
             }
         }
-        System.out.println("Found " + userAppointments.size() + " appointments for user");
+        Log.debug(() -> "Found " + userAppointments.size() + " appointments for user");
         return userAppointments;
     }
 
@@ -192,111 +319,179 @@ public class ConsultationController {
         return queues.get(username);
     }
 
+    // The priority tier and the regular tier, in queue order, both copied while holding the
+    // provider's lock so an appointment changing tiers shows up in exactly one of them
+    public List<List<Appointment>> getQueueTiers(String username) {
+        List<List<Appointment>> tiers = new ArrayList<>(2);
+        QueueManager queue = queues.get(username);
+        if (queue == null) {
+            tiers.add(new ArrayList<>());
+            tiers.add(new ArrayList<>());
+            return tiers;
+        }
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            tiers.add(new ArrayList<>(queue.getPriorityQueue()));
+            tiers.add(new ArrayList<>(queue.getRegularQueue()));
+            return tiers;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public List<TimeSlot> getAvailableTimeSlots(String username, LocalDate date) {
-        Map<LocalDate, List<TimeSlot>> schedule = professorSchedules.get(username);
-        if (schedule != null) {
-            List<TimeSlot> slots = schedule.get(date);
-            if (slots != null) {
-                return slots.stream()
-                    .filter(TimeSlot::isAvailable)
-                    .toList();
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            ProviderCalendar calendar = professorSchedules.get(username);
+            User professorOrCounselor = users.get(username);
+            if (calendar != null && professorOrCounselor != null) {
+                return calendar.getFreeSlots(date, professorOrCounselor);
             }
+            return new ArrayList<>();
+        } finally {
+            lock.unlock();
         }
-        return new ArrayList<>();
     }
 
     public Appointment createAppointment(User student, User professorOrCounselor, 
             String subject, int duration) {
-        System.out.println("\nAttempting to create appointment:");
-        System.out.println("Student: " + student.getUsername());
-        System.out.println("Professor/Counselor: " + professorOrCounselor.getUsername());
-        System.out.println("Subject: " + subject);
-        System.out.println("Duration: " + duration + " minutes");
+        if (Log.isDebugEnabled()) {
+            int requestedDuration = duration;
+            Log.debug(() -> "Attempting to create appointment: student=" + student.getUsername() +
+                ", professor/counselor=" + professorOrCounselor.getUsername() +
+                ", subject=" + subject + ", duration=" + requestedDuration + " minutes");
+        }
+
+        if (!isBookable(student, professorOrCounselor, subject, duration, null)) {
+            return null;
+        }
+
+        Appointment appointment;
+        ReentrantLock lock = lockFor(professorOrCounselor.getUsername());
+        lock.lock();
+        try {
+            appointment = bookNextAvailableSlot(student, professorOrCounselor, subject, roundDuration(duration), null);
+        } finally {
+            lock.unlock();
+        }
+        finishChange();
+        return appointment;
+    }
+
+    // Books many appointments at once, e.g. at the start of a term. Every request gets the
+    // slot that createAppointment calls in the same order would have given it, but the
+    // batch checks each student's enrollment in a subject once, takes each lock stripe once
+    // and, with a journal open, waits for one flush that covers all of its records instead
+    // of one per booking. The result list matches the request list, with null for requests
+    // that could not be booked.
+    public List<Appointment> createAppointments(List<BookingRequest> requests) {
+        Appointment[] results = new Appointment[requests.size()];
+        Map<String, Boolean> enrollment = new HashMap<>(); // Checked (student, subject) pairs
+        Map<ReentrantLock, List<Integer>> byStripe = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            BookingRequest request = requests.get(i);
+            if (isBookable(request.getStudent(), request.getProfessorOrCounselor(),
+                    request.getSubject(), request.getDuration(), enrollment)) {
+                byStripe.computeIfAbsent(lockFor(request.getProfessorOrCounselor().getUsername()),
+                    k -> new ArrayList<>()).add(i);
+            }
+        }
 
+        for (Map.Entry<ReentrantLock, List<Integer>> group : byStripe.entrySet()) {
+            // Slots only ever get taken while the stripe is held, so a duration's next fit
+            // with a provider is never before its previous one: each walks the calendar once
+            Map<User, Map<Integer, LocalDateTime>> searchFrom = new HashMap<>();
+            ReentrantLock lock = group.getKey();
+            lock.lock();
+            try {
+                for (int index : group.getValue()) {
+                    BookingRequest request = requests.get(index);
+                    User professorOrCounselor = request.getProfessorOrCounselor();
+                    int duration = roundDuration(request.getDuration());
+                    Map<Integer, LocalDateTime> cursors = searchFrom.computeIfAbsent(professorOrCounselor, k -> new HashMap<>());
+                    if (cursors.containsKey(duration) && cursors.get(duration) == null) {
+                        continue; // Already found nothing for this duration
+                    }
+                    Appointment appointment = bookNextAvailableSlot(request.getStudent(), professorOrCounselor,
+                        request.getSubject(), duration, cursors.get(duration));
+                    results[index] = appointment;
+                    cursors.put(duration, appointment != null ? appointment.getAppointmentTime() : null);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        finishChange();
+        return Arrays.asList(results);
+    }
+
+    // Checks everything about a booking that does not depend on the schedule. Enrollment
+    // answers are remembered in the given map when there is one.
+    private boolean isBookable(User student, User professorOrCounselor, String subject, int duration,
+            Map<String, Boolean> enrollment) {
         // Validate duration
         if (duration < MIN_APPOINTMENT_DURATION || duration > MAX_APPOINTMENT_DURATION) {
-            System.out.println("Failed: Invalid duration. Must be between " + MIN_APPOINTMENT_DURATION + 
+            Log.info(() -> "Failed: Invalid duration. Must be between " + MIN_APPOINTMENT_DURATION +
                 " and " + MAX_APPOINTMENT_DURATION + " minutes");
-            return null;
+            return false;
         }
 
-        // Round duration to nearest time slot interval
-        duration = (int) (Math.ceil((double)duration / TIME_SLOT_INTERVAL) * TIME_SLOT_INTERVAL);
-
         if (professorOrCounselor.getRole().equals("STUDENT")) {
-            System.out.println("Failed: Professor/Counselor is a student");
-            return null;
+            Log.info("Failed: Professor/Counselor is a student");
+            return false;
         }
 
         // Check subject restrictions
         if (professorOrCounselor.getRole().equals("PROFESSOR")) {
             if (!professorOrCounselor.canTeach(subject)) {
-                System.out.println("Failed: Professor does not teach this subject");
-                return null;
+                Log.info("Failed: Professor does not teach this subject");
+                return false;
             }
-            if (!student.isEnrolledIn(subject)) {
-                System.out.println("Failed: Student is not enrolled in this subject");
-                return null;
+            boolean enrolled = enrollment != null
+                ? enrollment.computeIfAbsent(student.getUsername() + "\n" + subject, k -> student.isEnrolledIn(subject))
+                : student.isEnrolledIn(subject);
+            if (!enrolled) {
+                Log.info("Failed: Student is not enrolled in this subject");
+                return false;
             }
         }
+        return true;
+    }
 
+    // Round duration to nearest time slot interval
+    private static int roundDuration(int duration) {
+        return (int) (Math.ceil((double) duration / TIME_SLOT_INTERVAL) * TIME_SLOT_INTERVAL);
+    }
+
+    // Caller must hold the provider's lock. Books the earliest free time at or after
+    // notBefore (null: anywhere in the horizon).
+    private Appointment bookNextAvailableSlot(User student, User professorOrCounselor, String subject, int duration,
+            LocalDateTime notBefore) {
         // Find the next available time slot
-        Map<LocalDate, List<TimeSlot>> schedule = professorSchedules.get(professorOrCounselor.getUsername());
-        if (schedule == null) {
-            System.out.println("Failed: No schedule found for " + professorOrCounselor.getUsername());
+        ProviderCalendar calendar = professorSchedules.get(professorOrCounselor.getUsername());
+        if (calendar == null) {
+            Log.info(() -> "Failed: No schedule found for " + professorOrCounselor.getUsername());
             return null;
         }
 
-        // Sort dates to ensure we check in chronological order
-        List<LocalDate> sortedDates = new ArrayList<>(schedule.keySet());
-        Collections.sort(sortedDates);
-
-        TimeSlot selectedSlot = null;
-        LocalDateTime appointmentTime = null;
-
-        // Find the first available slot that can accommodate the duration
-        for (LocalDate date : sortedDates) {
-            List<TimeSlot> slots = schedule.get(date);
-            for (TimeSlot slot : slots) {
-                if (slot.isAvailable() && slot.canAccommodate(duration)) {
-                    // Check if this slot overlaps with any existing appointments
-                    boolean hasOverlap = false;
-                    for (Appointment existingApp : appointments.values()) {
-                        if (existingApp.getProfessorOrCounselor().equals(professorOrCounselor) &&
-                            existingApp.getStatus().equals("PENDING") &&
-                            existingApp.getAppointmentTime().toLocalDate().equals(date)) {
-                            
-                            LocalDateTime slotStart = LocalDateTime.of(date, slot.getStartTime());
-                            LocalDateTime slotEnd = slotStart.plusMinutes(duration);
-                            LocalDateTime existingStart = existingApp.getAppointmentTime();
-                            LocalDateTime existingEnd = existingStart.plusMinutes(existingApp.getEstimatedDuration());
-                            
-                            if ((slotStart.isBefore(existingEnd) && slotEnd.isAfter(existingStart))) {
-                                hasOverlap = true;
-                                break;
-                            }
-                        }
-                    }
-                    
-                    if (!hasOverlap) {
-                        selectedSlot = slot;
-                        appointmentTime = LocalDateTime.of(date, slot.getStartTime());
-                        System.out.println("Found available slot: " + appointmentTime);
-                        break;
-                    }
-                }
-            }
-            if (selectedSlot != null) break;
+        // Earliest free slot in the horizon that can accommodate the duration
+        LocalDateTime appointmentTime = calendar.findFirstFree(notBefore, duration);
+        if (appointmentTime == null) {
+            Log.info("Failed: No available slots found");
+            return null;
         }
 
-        if (selectedSlot == null) {
-            System.out.println("Failed: No available slots found");
+        QueueManager queue = queues.get(professorOrCounselor.getUsername());
+        if (queue == null) {
+            Log.warn(() -> "No queue found for " + professorOrCounselor.getUsername());
             return null;
         }
 
         // Create appointment
         Appointment appointment = new Appointment(
-            nextAppointmentId++,
+            nextAppointmentId.getAndIncrement(),
             student,
             professorOrCounselor,
             appointmentTime,
@@ -304,271 +499,360 @@ public class ConsultationController {
             duration
         );
 
-        try {
-            // Add to time slot
-            selectedSlot.addAppointment(appointment);
-            
-            // Add to appointments map
-            appointments.put(appointment.getId(), appointment);
-            
-            // Add to FIFO queue
-            QueueManager queue = queues.get(professorOrCounselor.getUsername());
-            if (queue != null) {
-                queue.addAppointment(appointment);
-                System.out.println("Appointment created successfully with ID: " + appointment.getId());
-                return appointment;
-            } else {
-                System.out.println("Warning: No queue found for " + professorOrCounselor.getUsername());
-                // Rollback time slot if queue doesn't exist
-                selectedSlot.removeAppointment();
-                appointments.remove(appointment.getId());
-                return null;
-            }
-        } catch (IllegalStateException e) {
-            System.out.println("Failed to create appointment: " + e.getMessage());
-            return null;
-        }
+        journal(REC_CREATE, appointment.getId(), student.getUsername(), professorOrCounselor.getUsername(),
+            appointmentTime, subject, duration);
+
+        // Occupy the time slot
+        claimSlot(appointment);
+        
+        // Add to appointments map
+        appointments.put(appointment.getId(), appointment);
+        indexAppointment(appointment);
+        
+        // Add to FIFO queue
+        queue.addAppointment(appointment);
+        fireAppointmentChange(ChangeEvent.Type.APPOINTMENT_CREATED, appointment);
+        Log.info(() -> "Appointment created successfully with ID: " + appointment.getId() +
+            " at " + appointment.getAppointmentTime());
+        return appointment;
     }
 
     public boolean cancelAppointment(Appointment appointment) {
-        if (appointment == null || !appointment.getStatus().equals("PENDING")) {
+        if (appointment == null) {
             return false;
         }
+        ReentrantLock lock = lockFor(appointment.getProfessorOrCounselor().getUsername());
+        lock.lock();
+        try {
+            if (!appointment.getStatus().equals("PENDING")) {
+                return false;
+            }
+            journal(REC_CANCEL, appointment.getId());
 
-        // Remove from queue if it exists
-        QueueManager queue = getQueueManager(appointment.getProfessorOrCounselor().getUsername());
-        if (queue != null) {
-            queue.removeAppointment(appointment);
-        }
-
-        // Update appointment status
-        appointment.setStatus("CANCELLED");
-
-        // Free up the time slot
-        Map<LocalDate, List<TimeSlot>> schedule = professorSchedules.get(appointment.getProfessorOrCounselor().getUsername());
-        if (schedule != null) {
-            LocalDate appointmentDate = appointment.getAppointmentTime().toLocalDate();
-            List<TimeSlot> slots = schedule.get(appointmentDate);
-            if (slots != null) {
-                for (TimeSlot slot : slots) {
-                    if (slot.getAppointment() != null && slot.getAppointment().getId() == appointment.getId()) {
-                        slot.removeAppointment();
-                        break;
-                    }
-                }
+            // Remove from queue if it exists
+            QueueManager queue = getQueueManager(appointment.getProfessorOrCounselor().getUsername());
+            if (queue != null) {
+                queue.removeAppointment(appointment);
             }
-        }
 
-        // Create notification for both parties
-        createNotification(appointment.getStudent().getUsername(), 
-            "Appointment cancelled: " + appointment.getSubject() + " with " + 
-            appointment.getProfessorOrCounselor().getName());
-        createNotification(appointment.getProfessorOrCounselor().getUsername(),
-            "Appointment cancelled: " + appointment.getSubject() + " with " + 
-            appointment.getStudent().getName());
+            // Update appointment status
+            appointment.setStatus("CANCELLED");
 
+            // Free up the time slot
+            releaseSlot(appointment);
+            fireAppointmentChange(ChangeEvent.Type.STATUS_CHANGED, appointment);
+
+            // Create notification for both parties
+            queueNotification(appointment.getStudent().getUsername(), 
+                "Appointment cancelled: " + appointment.getSubject() + " with " + 
+                appointment.getProfessorOrCounselor().getName());
+            queueNotification(appointment.getProfessorOrCounselor().getUsername(),
+                "Appointment cancelled: " + appointment.getSubject() + " with " + 
+                appointment.getStudent().getName());
+        } finally {
+            lock.unlock();
+        }
+        finishChange();
         return true;
     }
 
     public Appointment getNextAppointment(String username) {
-        QueueManager queue = queues.get(username);
-        if (queue != null) {
-            Appointment nextAppointment = queue.getNextAppointment();
-            if (nextAppointment != null) {
-                nextAppointment.setStatus("IN_PROGRESS");
-                // Remove from time slot
-                Map<LocalDate, List<TimeSlot>> schedule = professorSchedules.get(username);
-                if (schedule != null) {
-                    List<TimeSlot> slots = schedule.get(nextAppointment.getAppointmentTime().toLocalDate());
-                    if (slots != null) {
-                        for (TimeSlot slot : slots) {
-                            if (slot.getAppointment() != null && 
-                                slot.getAppointment().getId() == nextAppointment.getId()) {
-                                slot.removeAppointment();
-                                break;
-                            }
-                        }
-                    }
+        Appointment nextAppointment = null;
+        ReentrantLock lock = lockFor(username);
+        lock.lock();
+        try {
+            QueueManager queue = queues.get(username);
+            if (queue != null) {
+                nextAppointment = queue.peekNextAppointment();
+                if (nextAppointment != null) {
+                    journal(REC_NEXT, nextAppointment.getId());
+                    queue.getNextAppointment();
+                    nextAppointment.setStatus("IN_PROGRESS");
+                    // Remove from time slot
+                    releaseSlot(nextAppointment);
+                    fireAppointmentChange(ChangeEvent.Type.DEQUEUED, nextAppointment);
                 }
             }
-            return nextAppointment;
+        } finally {
+            lock.unlock();
         }
-        return null;
+        finishChange();
+        return nextAppointment;
     }
 
     public boolean updateAppointmentStatus(Appointment appointment, String status) {
-        if (appointments.containsKey(appointment.getId())) {
-            String oldStatus = appointment.getStatus();
-            appointment.setStatus(status);
-            
-            // Only free up time slot if appointment is being cancelled
-            if (status.equals("CANCELLED")) {
-                Map<LocalDate, List<TimeSlot>> schedule = professorSchedules
-                    .get(appointment.getProfessorOrCounselor().getUsername());
-                if (schedule != null) {
-                    LocalDate appointmentDate = appointment.getAppointmentTime().toLocalDate();
-                    List<TimeSlot> slots = schedule.get(appointmentDate);
-                    if (slots != null) {
-                        for (TimeSlot slot : slots) {
-                            if (slot.getAppointment() != null && 
-                                slot.getAppointment().getId() == appointment.getId()) {
-                                slot.removeAppointment();
-                                break;
-                            }
-                        }
-                    }
-                }
+        ReentrantLock lock = lockFor(appointment.getProfessorOrCounselor().getUsername());
+        lock.lock();
+        try {
+            if (!appointments.containsKey(appointment.getId())) {
+                return false;
             }
-            
+            journal(REC_STATUS, appointment.getId(), status);
+            String oldStatus = changeStatus(appointment, status);
+            fireAppointmentChange(ChangeEvent.Type.STATUS_CHANGED, appointment);
+
             // Create notification for status change
             if (!oldStatus.equals(status)) {
                 String message = "Appointment status changed from " + oldStatus + " to " + status;
-                createNotification(appointment.getStudent().getUsername(), message);
-                createNotification(appointment.getProfessorOrCounselor().getUsername(), message);
+                queueNotification(appointment.getStudent().getUsername(), message);
+                queueNotification(appointment.getProfessorOrCounselor().getUsername(), message);
             }
-            
-            return true;
+        } finally {
+            lock.unlock();
         }
-        return false;
+        finishChange();
+        return true;
+    }
+
+    // Caller must hold the provider's lock. Sets the status and claims or frees the slot to
+    // match; returns the old status.
+    private String changeStatus(Appointment appointment, String status) {
+        String oldStatus = appointment.getStatus();
+        appointment.setStatus(status);
+
+        // An appointment that is pending again needs its time back
+        if (!oldStatus.equals("PENDING") && status.equals("PENDING")
+                && !slotHolders.contains(appointment.getId())) {
+            claimSlot(appointment);
+        }
+
+        // Only free up time slot if appointment is being cancelled
+        if (status.equals("CANCELLED")) {
+            releaseSlot(appointment);
+        }
+        return oldStatus;
     }
 
     public boolean setPriority(Appointment appointment, boolean isPriority) {
         if (appointment == null) return false;
-        
+        boolean changed;
+        ReentrantLock lock = lockFor(appointment.getProfessorOrCounselor().getUsername());
+        lock.lock();
+        try {
+            changed = changePriority(appointment, isPriority);
+        } finally {
+            lock.unlock();
+        }
+        finishChange(); // A cascade notifies every student it moves
+        return changed;
+    }
+
+    // Caller must hold the provider's lock
+    private boolean changePriority(Appointment appointment, boolean isPriority) {
         // Get the queue manager for the professor/counselor
         QueueManager queueManager = queues.get(appointment.getProfessorOrCounselor().getUsername());
         if (queueManager == null) return false;
-        
+        // Only a waiting appointment can move; anything else would claim a slot it never frees
+        if (!appointment.getStatus().equals("PENDING") || !queueManager.isQueued(appointment)) return false;
+    
         // If setting priority
         if (isPriority && !appointment.isPriority()) {
             // Find the earliest available slot
-            LocalDateTime currentTime = appointment.getAppointmentTime();
-            LocalDateTime earliestSlot = findNextAvailableSlot(appointment.getProfessorOrCounselor(), LocalDateTime.now());
-            
+            LocalDateTime earliestSlot = findNextAvailableSlot(appointment.getProfessorOrCounselor(), LocalDateTime.now(),
+                appointment.getEstimatedDuration());
+        
             if (earliestSlot != null) {
-                // Get all regular appointments that need to be moved
-                List<Appointment> appointmentsToMove = new ArrayList<>();
-                for (Appointment app : queueManager.getRegularQueue()) {
-                    if (app.getAppointmentTime().isBefore(currentTime)) {
-                        appointmentsToMove.add(app);
-                    }
-                }
-                
-                // Sort appointments by time to maintain FIFO order
-                appointmentsToMove.sort(Comparator.comparing(Appointment::getAppointmentTime));
-                
-                // Move each appointment to the next available slot
-                LocalDateTime nextSlot = earliestSlot;
-                for (Appointment app : appointmentsToMove) {
-                    // Find next available slot after the current one
-                    LocalDateTime availableSlot = findNextAvailableSlot(appointment.getProfessorOrCounselor(), nextSlot);
-                    if (availableSlot != null) {
-                        // Free up the old time slot
-                        Map<LocalDate, List<TimeSlot>> schedule = professorSchedules
-                            .get(app.getProfessorOrCounselor().getUsername());
-                        if (schedule != null) {
-                            LocalDate oldDate = app.getAppointmentTime().toLocalDate();
-                            List<TimeSlot> slots = schedule.get(oldDate);
-                            if (slots != null) {
-                                for (TimeSlot slot : slots) {
-                                    if (slot.getAppointment() != null && 
-                                        slot.getAppointment().getId() == app.getId()) {
-                                        slot.removeAppointment();
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                        
-                        // Update appointment time
-                        app.setAppointmentTime(availableSlot);
-                        notifyAppointmentChange(app, "Your appointment has been rescheduled to " + 
-                            availableSlot.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) + 
-                            " due to a priority appointment.");
-                        nextSlot = availableSlot;
-                    }
-                }
-                
-                // Move the priority appointment to the earliest slot
-                appointment.setAppointmentTime(earliestSlot);
-                appointment.setPriority(true);
-                queueManager.addToPriorityQueue(appointment);
-                
-                // Sort priority queue to maintain FIFO order
-                List<Appointment> priorityList = new ArrayList<>(queueManager.getPriorityQueue());
-                priorityList.sort(Comparator.comparing(Appointment::getAppointmentTime));
-                queueManager.getPriorityQueue().clear();
-                queueManager.getPriorityQueue().addAll(priorityList);
-                
+                cascadePriority(queueManager, appointment, earliestSlot);
                 return true;
             }
         } 
         // If removing priority
         else if (!isPriority && appointment.isPriority()) {
-            appointment.setPriority(false);
-            queueManager.removeFromPriorityQueue(appointment);
+            // Back to the end of the regular queue
+            journal(REC_PRIORITY, appointment.getId(), false);
+            queueManager.setPriority(appointment, false);
+            fireAppointmentChange(ChangeEvent.Type.PRIORITY_CHANGED, appointment);
             return true;
         }
-        
+    
         return false;
     }
 
-    private LocalDateTime findNextAvailableSlot(User professorOrCounselor, LocalDateTime currentTime) {
-        // Find the next available slot after currentTime
-        Map<LocalDate, List<TimeSlot>> schedule = professorSchedules.get(professorOrCounselor.getUsername());
-        if (schedule == null) return null;
-
-        // Sort dates to ensure chronological order
-        List<LocalDate> sortedDates = new ArrayList<>(schedule.keySet());
-        Collections.sort(sortedDates);
-
-        for (LocalDate date : sortedDates) {
-            // Skip dates before current date
-            if (date.isBefore(currentTime.toLocalDate())) continue;
-
-            List<TimeSlot> slots = schedule.get(date);
-            for (TimeSlot slot : slots) {
-                LocalDateTime slotStart = LocalDateTime.of(date, slot.getStartTime());
-                
-                // Skip slots before current time on the same day
-                if (date.equals(currentTime.toLocalDate()) && slotStart.isBefore(currentTime)) continue;
-
-                // Check if slot is available and doesn't overlap with existing appointments
-                if (slot.isAvailable()) {
-                    boolean hasOverlap = false;
-                    for (Appointment existingApp : appointments.values()) {
-                        if (existingApp.getProfessorOrCounselor().equals(professorOrCounselor) &&
-                            existingApp.getStatus().equals("PENDING") &&
-                            existingApp.getAppointmentTime().toLocalDate().equals(date)) {
-                            
-                            LocalDateTime existingStart = existingApp.getAppointmentTime();
-                            LocalDateTime existingEnd = existingStart.plusMinutes(existingApp.getEstimatedDuration());
-                            
-                            if ((slotStart.isBefore(existingEnd) && 
-                                 slotStart.plusMinutes(existingApp.getEstimatedDuration()).isAfter(existingStart))) {
-                                hasOverlap = true;
-                                break;
-                            }
-                        }
-                    }
-                    
-                    if (!hasOverlap) {
-                        return slotStart;
-                    }
+    // Caller must hold the provider's lock. Moves the priority appointment to earliestSlot and
+    // pushes the regular appointments that were booked before it back, in time order, each
+    // to the next free time after the one before. The provider's time-ordered index and the
+    // calendar are walked forward together once to plan the moves, which are journaled
+    // together and only then applied, so the cascade happens whole or not at all; every
+    // affected student is notified in one batch.
+    private void cascadePriority(QueueManager queueManager, Appointment appointment, LocalDateTime earliestSlot) {
+        User professorOrCounselor = appointment.getProfessorOrCounselor();
+        ProviderCalendar calendar = professorSchedules.get(professorOrCounselor.getUsername());
+        LocalDateTime currentTime = appointment.getAppointmentTime();
+
+        // Regular appointments booked before the priority one, already in time order
+        List<Appointment> displaced = new ArrayList<>();
+        NavigableSet<Appointment> byTime = providerAppointments.get(professorOrCounselor.getUsername());
+        if (byTime != null) {
+            for (Appointment app : byTime.headSet(appointment, false)) {
+                if (app.getAppointmentTime().isBefore(currentTime) && queueManager.isInRegularQueue(app)) {
+                    displaced.add(app);
                 }
             }
         }
-        
-        return null;
+
+        // Plan on the calendar alone. The priority appointment claims the earliest slot first
+        // so the appointments moved after it are not placed on top of it. Each displaced
+        // appointment takes the first free time at or after the previous one; its own slot
+        // stays taken while searching and is freed right after, so a later appointment may
+        // still move into it.
+        List<SlotMove> plan = new ArrayList<>();
+        plan.add(moveSlot(calendar, appointment, earliestSlot));
+        LocalDateTime nextSlot = earliestSlot;
+        for (Appointment app : displaced) {
+            LocalDateTime availableSlot = calendar.findFirstFree(nextSlot, app.getEstimatedDuration());
+            if (availableSlot == null) continue;
+            plan.add(moveSlot(calendar, app, availableSlot));
+            nextSlot = availableSlot;
+        }
+
+        // Replaying the moves one at a time reproduces the plan's releases and claims
+        List<byte[]> records = new ArrayList<>();
+        for (SlotMove move : plan) {
+            records.add(Journal.encode(REC_RESCHEDULE, move.appointment.getId(), move.to));
+        }
+        records.add(Journal.encode(REC_PRIORITY, appointment.getId(), true));
+        try {
+            journalAll(records);
+        } catch (RuntimeException e) {
+            for (int i = plan.size() - 1; i >= 0; i--) {
+                undoSlotMove(calendar, plan.get(i));
+            }
+            throw e;
+        }
+
+        // Apply: the time indexes are ordered by time, so re-index as the times change
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        for (SlotMove move : plan) {
+            Appointment app = move.appointment;
+            unindexAppointment(app);
+            app.setAppointmentTime(move.to);
+            indexAppointment(app);
+            queueManager.updateAppointmentTime(app);
+            fireAppointmentChange(ChangeEvent.Type.RESCHEDULED, app);
+            if (app != appointment) {
+                // The pipeline batches these per student on its own thread
+                queueNotification(app.getStudent().getUsername(), "Your appointment has been rescheduled to " +
+                    move.to.format(format) + " due to a priority appointment.");
+            }
+        }
+
+        // Move the priority appointment to the priority queue, which is ordered by time
+        queueManager.promote(appointment);
+        fireAppointmentChange(ChangeEvent.Type.PRIORITY_CHANGED, appointment);
     }
 
-    private void notifyAppointmentChange(Appointment appointment, String message) {
-        Notification notification = new Notification(message);
-        
-        // Add notification to student's list
-        String studentUsername = appointment.getStudent().getUsername();
-        userNotifications.computeIfAbsent(studentUsername, k -> new ArrayList<>())
-            .add(notification);
+    // One appointment's calendar change in a cascade plan, kept so the plan can be undone
+    private static final class SlotMove {
+        final Appointment appointment;
+        final LocalDateTime to;
+        boolean released; // Its old slot was freed
+        boolean claimed; // The new one was taken
+
+        SlotMove(Appointment appointment, LocalDateTime to) {
+            this.appointment = appointment;
+            this.to = to;
+        }
+    }
+
+    // Frees the appointment's slot and claims the one at the new time, as
+    // rescheduleAppointment does, but leaves the appointment itself unchanged
+    private SlotMove moveSlot(ProviderCalendar calendar, Appointment appointment, LocalDateTime to) {
+        SlotMove move = new SlotMove(appointment, to);
+        move.released = slotHolders.remove(appointment.getId());
+        if (move.released) {
+            calendar.release(appointment.getAppointmentTime(), appointment.getEstimatedDuration());
+        }
+        move.claimed = calendar.claim(to, appointment.getEstimatedDuration());
+        if (move.claimed) {
+            slotHolders.add(appointment.getId());
+        }
+        return move;
+    }
+
+    // Undoing the moves of a plan last first gives back exactly the slots they took
+    private void undoSlotMove(ProviderCalendar calendar, SlotMove move) {
+        Appointment appointment = move.appointment;
+        if (move.claimed) {
+            slotHolders.remove(appointment.getId());
+            calendar.release(move.to, appointment.getEstimatedDuration());
+        }
+        if (move.released) {
+            calendar.claim(appointment.getAppointmentTime(), appointment.getEstimatedDuration());
+            slotHolders.add(appointment.getId());
+        }
+    }
+
+    private LocalDateTime findNextAvailableSlot(User professorOrCounselor, LocalDateTime currentTime, int duration) {
+        // Find the earliest free time at or after currentTime that fits the duration
+        ProviderCalendar calendar = professorSchedules.get(professorOrCounselor.getUsername());
+        return calendar != null ? calendar.findFirstFree(currentTime, duration) : null;
+    }
+
+    private void rescheduleAppointment(Appointment appointment, LocalDateTime newTime) {
+        // The indexes are ordered by time, so take the appointment out before changing it
+        unindexAppointment(appointment);
+        releaseSlot(appointment);
+        appointment.setAppointmentTime(newTime);
+        indexAppointment(appointment);
+        QueueManager queue = queues.get(appointment.getProfessorOrCounselor().getUsername());
+        if (queue != null) {
+            queue.updateAppointmentTime(appointment);
+        }
+
+        // Occupy the time slot that starts at the new time, if the schedule has one
+        claimSlot(appointment);
+    }
+
+    private boolean claimSlot(Appointment appointment) {
+        ProviderCalendar calendar = professorSchedules.get(appointment.getProfessorOrCounselor().getUsername());
+        if (calendar != null && calendar.claim(appointment.getAppointmentTime(), appointment.getEstimatedDuration())) {
+            slotHolders.add(appointment.getId());
+            return true;
+        }
+        return false;
+    }
+
+    private void releaseSlot(Appointment appointment) {
+        if (slotHolders.remove(appointment.getId())) {
+            ProviderCalendar calendar = professorSchedules.get(appointment.getProfessorOrCounselor().getUsername());
+            if (calendar != null) {
+                calendar.release(appointment.getAppointmentTime(), appointment.getEstimatedDuration());
+            }
+        }
+    }
+
+    private void indexAppointment(Appointment appointment) {
+        // A student's set is shared by all of their providers, so the sets are concurrent
+        studentAppointments.computeIfAbsent(appointment.getStudent().getUsername(),
+            k -> new ConcurrentSkipListSet<>(BY_TIME)).add(appointment);
+        providerAppointments.computeIfAbsent(appointment.getProfessorOrCounselor().getUsername(),
+            k -> new ConcurrentSkipListSet<>(BY_TIME)).add(appointment);
+    }
+
+    private void unindexAppointment(Appointment appointment) {
+        if (appointment == null) return;
+        Set<Appointment> byStudent = studentAppointments.get(appointment.getStudent().getUsername());
+        if (byStudent != null) byStudent.remove(appointment);
+        Set<Appointment> byProvider = providerAppointments.get(appointment.getProfessorOrCounselor().getUsername());
+        if (byProvider != null) byProvider.remove(appointment);
+    }
+
+    private ReentrantLock lockFor(String providerUsername) {
+        int h = providerUsername.hashCode();
+        return providerLocks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    // Stripes are always taken in index order, so this cannot deadlock with single-stripe callers
+    private void lockAllProviders() {
+        for (ReentrantLock lock : providerLocks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAllProviders() {
+        for (int i = LOCK_STRIPES - 1; i >= 0; i--) {
+            providerLocks[i].unlock();
+        }
     }
 
     public int getEstimatedWaitTime(String username) {
@@ -576,79 +860,757 @@ public class ConsultationController {
         return queue != null ? queue.getEstimatedWaitTime() : 0;
     }
 
+    public int getQueuePosition(Appointment appointment) {
+        ReentrantLock lock = lockFor(appointment.getProfessorOrCounselor().getUsername());
+        lock.lock();
+        try {
+            QueueManager queue = queues.get(appointment.getProfessorOrCounselor().getUsername());
+            return queue != null ? queue.getQueuePosition(appointment) : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitTimeAhead(Appointment appointment) {
+        ReentrantLock lock = lockFor(appointment.getProfessorOrCounselor().getUsername());
+        lock.lock();
+        try {
+            QueueManager queue = queues.get(appointment.getProfessorOrCounselor().getUsername());
+            return queue != null ? queue.getWaitTimeAhead(appointment) : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void initializeAllTimeSlots() {
-        System.out.println("\nInitializing time slots...");
-        professorSchedules.clear();
-        LocalDate today = LocalDate.now();
-        for (int i = 0; i < 7; i++) {
-            LocalDate date = today.plusDays(i);
-            System.out.println("\nCreating slots for date: " + date);
-            for (User user : users.values()) {
-                if (user.getRole().equals("PROFESSOR") || user.getRole().equals("COUNSELOR")) {
-                    System.out.println("Creating slots for " + user.getUsername());
-                    Map<LocalDate, List<TimeSlot>> schedule = professorSchedules
-                        .computeIfAbsent(user.getUsername(), k -> new HashMap<>());
-                    
-                    List<TimeSlot> slots = new ArrayList<>();
-                    // Morning slots: 9:00-12:00
-                    slots.add(new TimeSlot(LocalTime.of(9, 0), LocalTime.of(10, 0), user));
-                    slots.add(new TimeSlot(LocalTime.of(10, 0), LocalTime.of(11, 0), user));
-                    slots.add(new TimeSlot(LocalTime.of(11, 0), LocalTime.of(12, 0), user));
-                    // Afternoon slots: 1:00-4:00
-                    slots.add(new TimeSlot(LocalTime.of(13, 0), LocalTime.of(14, 0), user));
-                    slots.add(new TimeSlot(LocalTime.of(14, 0), LocalTime.of(15, 0), user));
-                    slots.add(new TimeSlot(LocalTime.of(15, 0), LocalTime.of(16, 0), user));
-                    
-                    schedule.put(date, slots);
-                    System.out.println("Created " + slots.size() + " slots for " + user.getUsername());
-                }
-            }
+        lockAllProviders();
+        try {
+            // Hourly slots
+            LocalDate today = LocalDate.now();
+            journal(REC_GRID, 4, today.toEpochDay());
+            rebuildSchedules(4, today);
+        } finally {
+            unlockAllProviders();
         }
-        timeSlots = new ArrayList<>(professorSchedules.values().stream()
-            .flatMap(schedule -> schedule.values().stream())
-            .flatMap(List::stream)
-            .toList());
-        System.out.println("Time slot initialization complete");
+        finishChange();
     }
 
+    // The notifications the user's inbox still holds, oldest first. Includes every
+    // notification created before the call, delivered or not.
     public List<Notification> getUserNotifications(String username) {
-        return userNotifications.getOrDefault(username, new ArrayList<>());
+        notificationPipeline.flush();
+        NotificationInbox inbox = inboxes.get(username);
+        return inbox != null ? inbox.getAll() : new ArrayList<>();
+    }
+
+    // One page of the user's notifications: sequence numbers in [fromSeq, toSeq), oldest first
+    public List<Notification> getUserNotifications(String username, long fromSeq, long toSeq) {
+        notificationPipeline.flush();
+        NotificationInbox inbox = inboxes.get(username);
+        return inbox != null ? inbox.getRange(fromSeq, toSeq) : new ArrayList<>();
+    }
+
+    // Sequence number of the oldest notification the user's inbox still holds; older ones
+    // have been dropped to make room
+    public long getOldestNotificationSeq(String username) {
+        notificationPipeline.flush();
+        NotificationInbox inbox = inboxes.get(username);
+        return inbox != null ? inbox.getFirstSeq() : 0;
+    }
+
+    public int getUnreadCount(String username) {
+        notificationPipeline.flush();
+        NotificationInbox inbox = inboxes.get(username);
+        return inbox != null ? inbox.getUnreadCount() : 0;
+    }
+
+    public boolean isNotificationRead(String username, long seq) {
+        NotificationInbox inbox = inboxes.get(username);
+        return inbox == null || inbox.isRead(seq);
+    }
+
+    // Returns false if the notification was already read or is no longer held
+    public boolean markRead(String username, long seq) {
+        notificationPipeline.flush();
+        NotificationInbox inbox = inboxes.get(username);
+        if (inbox == null) return false;
+        checkpointLock.readLock().lock();
+        try {
+            synchronized (inbox) {
+                if (inbox.isRead(seq) || seq < inbox.getFirstSeq() || seq >= inbox.getNextSeq()) return false;
+                journal(REC_MARK_READ, username, seq);
+                inbox.markRead(seq);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        finishChange();
+        return true;
+    }
+
+    // Marks every notification created before the call read
+    public void markAllRead(String username) {
+        notificationPipeline.flush();
+        NotificationInbox inbox = inboxes.get(username);
+        if (inbox == null) return;
+        checkpointLock.readLock().lock();
+        try {
+            synchronized (inbox) {
+                journal(REC_MARK_ALL_READ, username, inbox.getNextSeq());
+                inbox.markAllRead();
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        finishChange();
+    }
+
+    // Delivery counters and queue depth, for watching backpressure
+    public NotificationPipeline getNotificationPipeline() {
+        return notificationPipeline;
     }
 
     public List<Appointment> getFilteredAppointments(User user, String statusFilter) {
-        List<Appointment> appointments = getUserAppointments(user);
-        return appointments.stream()
+        // The per-user indexes are already ordered by appointment time
+        return getUserAppointments(user).stream()
             .filter(app -> statusFilter.equals("All") || app.getStatus().equalsIgnoreCase(statusFilter))
-            .sorted(Comparator.comparing(Appointment::getAppointmentTime))
             .collect(Collectors.toList());
     }
 
-    public Appointment findAppointmentFromQueueTable(String username, int selectedRow) {
-        QueueManager qm = getQueueManager(username);
-        if (qm == null) return null;
+    // Queues the notification for delivery; the caller does not wait for it to arrive, only
+    // for room in the queue when it is over capacity
+    public void createNotification(String username, String message) {
+        queueNotification(username, message);
+        notificationPipeline.awaitCapacity();
+    }
 
-        List<Appointment> priorityQueue = new ArrayList<>(qm.getPriorityQueue());
-        List<Appointment> regularQueue = new ArrayList<>(qm.getRegularQueue());
+    // Safe while holding locks: never blocks. Callers apply the backpressure with
+    // notificationPipeline.awaitCapacity() once they have released their locks.
+    private void queueNotification(String username, String message) {
+        notificationPipeline.submit(username, new Notification(message));
+    }
 
-        priorityQueue.sort(Comparator.comparing(Appointment::getAppointmentTime));
-        regularQueue.sort(Comparator.comparing(Appointment::getAppointmentTime));
+    // Called by the notification pipeline with one recipient's share of a batch. The
+    // notifications are journaled here, by the only writer of the inbox, so replay hands
+    // out the same sequence numbers that delivery does without ordering the producers.
+    private void deliverNotifications(String username, List<Notification> batch) {
+        NotificationInbox inbox = inboxFor(username);
+        checkpointLock.readLock().lock();
+        try {
+            synchronized (inbox) {
+                for (Notification notification : batch) {
+                    journal(REC_NOTIFY, username, notification.getMessage(), notification.getTimestamp(), false);
+                }
+                inbox.addAll(batch);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+        fireChange(username, new ChangeEvent(ChangeEvent.Type.NOTIFICATION_ADDED, null, username));
+    }
 
-        List<Appointment> displayedQueue = new ArrayList<>();
-        displayedQueue.addAll(priorityQueue);
-        displayedQueue.addAll(regularQueue);
+    private NotificationInbox inboxFor(String username) {
+        return inboxes.computeIfAbsent(username, k -> new NotificationInbox(INBOX_CAPACITY));
+    }
 
-        List<Appointment> currentlyVisibleInTable = displayedQueue.stream()
-            .filter(a -> a.getStatus().equals("PENDING") || a.getStatus().equals("IN_PROGRESS"))
-            .collect(Collectors.toList());
+    // The listener gets every change to an appointment the user is the student or the
+    // professor/counselor of, and one event per batch of notifications delivered to the
+    // user. A student's view can also listen to the providers it has appointments with to
+    // follow their whole queue.
+    public void addChangeListener(String username, ChangeEvent.Listener listener) {
+        changeListeners.computeIfAbsent(username, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void removeChangeListener(String username, ChangeEvent.Listener listener) {
+        changeListeners.computeIfPresent(username, (k, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
 
-        if (selectedRow >= 0 && selectedRow < currentlyVisibleInTable.size()) {
-            return currentlyVisibleInTable.get(selectedRow);
+    private void fireAppointmentChange(ChangeEvent.Type type, Appointment appointment) {
+        if (changeListeners.isEmpty()) return;
+        ChangeEvent event = new ChangeEvent(type, appointment, null);
+        fireChange(appointment.getStudent().getUsername(), event);
+        fireChange(appointment.getProfessorOrCounselor().getUsername(), event);
+    }
+
+    private void fireChange(String username, ChangeEvent event) {
+        List<ChangeEvent.Listener> listeners = changeListeners.get(username);
+        if (listeners == null) return;
+        for (ChangeEvent.Listener listener : listeners) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                Log.error("Change listener for " + username + " failed on " + event + ": " + e);
+            }
         }
-        return null;
     }
 
-    public void createNotification(String username, String message) {
-        List<Notification> notifications = userNotifications.computeIfAbsent(username, k -> new ArrayList<>());
-        notifications.add(new Notification(message));
+    // Starts recording every change in the given journal file. Records already in the file
+    // are replayed first, so the controller comes back in the state it had when the journal
+    // was last written. Returns whether anything was recovered.
+    public boolean openJournal(Path file) throws IOException {
+        lockAllProviders();
+        checkpointLock.writeLock().lock();
+        try {
+            if (journal != null) {
+                throw new IllegalStateException("A journal is already open");
+            }
+            Journal opened = Journal.open(file, this::applyRecord);
+            checkpointer = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "journal-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            journal = opened;
+            // Replay rebuilt the calendars as of the days recorded; bring them up to today
+            LocalDate today = LocalDate.now();
+            if (today.isAfter(scheduleDay())) {
+                journal(REC_ROLL, today.toEpochDay());
+                rollSchedules(today);
+            }
+            Log.info(() -> "Journal " + file + " opened, " + opened.getReplayedCount() + " records replayed");
+            return opened.getReplayedCount() > 0;
+        } finally {
+            checkpointLock.writeLock().unlock();
+            unlockAllProviders();
+        }
+    }
+
+    // Delivers the notifications still queued, stops the delivery thread and closes the
+    // journal if one is open. The controller still works afterwards, but delivers
+    // notifications on the thread that creates them and no longer journals.
+    public void close() {
+        notificationPipeline.close();
+        closeJournal();
+    }
+
+    // Rewrites the journal as the records of the current state, so replay time depends on
+    // how much state there is rather than on how long the journal has been running
+    public void checkpoint() {
+        lockAllProviders();
+        checkpointLock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.compact(stateRecords());
+            }
+        } catch (IOException e) {
+            Log.error("Checkpoint failed: " + e.getMessage());
+        } finally {
+            checkpointLock.writeLock().unlock();
+            unlockAllProviders();
+        }
+    }
+
+    // Checkpoints and closes the journal; later changes are no longer recorded
+    public void closeJournal() {
+        checkpoint();
+        lockAllProviders();
+        checkpointLock.writeLock().lock();
+        try {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } finally {
+                    journal = null;
+                    checkpointer.shutdown();
+                }
+            }
+        } catch (IOException e) {
+            Log.error("Closing the journal failed: " + e.getMessage());
+        } finally {
+            checkpointLock.writeLock().unlock();
+            unlockAllProviders();
+        }
+    }
+
+    // Records a change if a journal is open, before the caller makes it: if the record
+    // cannot be taken this throws and the change must not happen. Callers hold the provider
+    // lock or the checkpoint read lock that guards the change, so a checkpoint never sees a
+    // change without its record.
+    private void journal(byte type, Object... fields) {
+        Journal current = journal;
+        if (current == null) return;
+        recorded(current, current.append(type, fields));
+    }
+
+    // Records the parts of one change as a unit; see journal
+    private void journalAll(List<byte[]> records) {
+        Journal current = journal;
+        if (current == null) return;
+        recorded(current, current.appendAll(records));
+    }
+
+    private void recorded(Journal current, long seq) {
+        lastRecorded.set(new Recorded(current, seq));
+        if (current.getRecordsSinceCompaction() >= CHECKPOINT_RECORDS && checkpointScheduled.compareAndSet(false, true)) {
+            // Checkpoints take every provider lock, which the caller may not do while holding one
+            checkpointer.execute(() -> {
+                try {
+                    checkpoint();
+                } finally {
+                    checkpointScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    // The last record a thread appended, for the change it belongs to to wait on
+    private static final class Recorded {
+        final Journal journal;
+        final long seq;
+
+        Recorded(Journal journal, long seq) {
+            this.journal = journal;
+            this.seq = seq;
+        }
+    }
+
+    // Ends a change once its locks are released: waits for the group commit that puts its
+    // records on disk, then for room in the notification queue if it is over capacity.
+    // Throws IllegalStateException if the journal failed before the records got there; the
+    // change has then been made but will not survive a restart.
+    private void finishChange() {
+        Recorded recorded = lastRecorded.get();
+        if (recorded != null) {
+            lastRecorded.remove();
+            try {
+                recorded.journal.awaitDurable(recorded.seq);
+            } catch (IOException e) {
+                throw new IllegalStateException("The change could not be recorded: " + e.getMessage(), e);
+            }
+        }
+        notificationPipeline.awaitCapacity();
+    }
+
+    // Caller must hold every provider lock and the checkpoint write lock. Records that
+    // rebuild the current state from nothing, queues in their exact order.
+    // Notifications still queued are journaled when they are delivered, after this.
+    private List<byte[]> stateRecords() {
+        List<byte[]> records = new ArrayList<>();
+        records.add(Journal.encode(REC_NEXT_ID, nextAppointmentId.get()));
+        // The grid record creates calendars for the users before it, so providers that have
+        // no calendar yet (registered since the last roll) come after it
+        List<User> withoutCalendar = new ArrayList<>();
+        for (User user : users.values()) {
+            boolean provider = user.getRole().equals("PROFESSOR") || user.getRole().equals("COUNSELOR");
+            if (provider && !professorSchedules.containsKey(user.getUsername())) {
+                withoutCalendar.add(user);
+            } else {
+                addUserRecords(records, user);
+            }
+        }
+        records.add(Journal.encode(REC_GRID, slotUnits, scheduleDay().toEpochDay()));
+        for (User user : withoutCalendar) {
+            addUserRecords(records, user);
+        }
+        List<Appointment> byId = new ArrayList<>(appointments.values());
+        byId.sort(Comparator.comparingInt(Appointment::getId));
+        for (Appointment app : byId) {
+            records.add(Journal.encode(REC_APPOINTMENT, app.getId(), app.getStudent().getUsername(),
+                app.getProfessorOrCounselor().getUsername(), app.getAppointmentTime(), app.getSubject(),
+                app.getEstimatedDuration(), app.getStatus(), app.isPriority(), slotHolders.contains(app.getId())));
+        }
+        for (QueueManager queue : queues.values()) {
+            for (Appointment app : queue.getPriorityQueue()) {
+                records.add(Journal.encode(REC_QUEUED, app.getId()));
+            }
+            for (Appointment app : queue.getRegularQueue()) {
+                records.add(Journal.encode(REC_QUEUED, app.getId()));
+            }
+        }
+        inboxes.forEach((username, inbox) -> {
+            records.add(Journal.encode(REC_INBOX, username, inbox.getFirstSeq(), inbox.getReadWatermark()));
+            for (Notification notification : inbox.getAll()) {
+                records.add(Journal.encode(REC_NOTIFY, username, notification.getMessage(),
+                    notification.getTimestamp(), inbox.isRead(notification.getSeq())));
+            }
+        });
+        return records;
+    }
+
+    // First day of the calendars' horizon; they all roll together
+    private LocalDate scheduleDay() {
+        for (ProviderCalendar calendar : professorSchedules.values()) {
+            return calendar.getFirstDay();
+        }
+        return LocalDate.now();
+    }
+
+    // The day a grid or roll record was written for. Records from before the day was
+    // recorded replay as of today, as they used to.
+    private static LocalDate readDay(DataInputStream in) throws IOException {
+        return in.available() > 0 ? LocalDate.ofEpochDay(in.readLong()) : LocalDate.now();
+    }
+
+    private static void addUserRecords(List<byte[]> records, User user) {
+        records.add(Journal.encode(REC_USER, user.getUsername(), user.getPassword(), user.getRole(),
+            user.getName(), user.getEmail()));
+        for (String subject : user.getSubjects()) {
+            records.add(Journal.encode(REC_SUBJECT, user.getUsername(), subject));
+        }
+    }
+
+    // Replays one journal record; runs inside openJournal with every lock held. Applies
+    // the recorded effects the same way the operation that wrote the record did.
+    private void applyRecord(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case REC_USER: {
+                String username = Journal.readString(in);
+                String password = Journal.readString(in);
+                String role = Journal.readString(in);
+                String name = Journal.readString(in);
+                addUser(username, password, role, name, Journal.readString(in));
+                break;
+            }
+            case REC_SUBJECT: {
+                User user = users.get(Journal.readString(in));
+                String subject = Journal.readString(in);
+                if (user != null) user.addSubject(subject);
+                break;
+            }
+            case REC_GRID: {
+                int units = in.readInt();
+                rebuildSchedules(units, readDay(in));
+                break;
+            }
+            case REC_ROLL:
+                rollSchedules(readDay(in));
+                break;
+            case REC_NEXT_ID:
+                nextAppointmentId.accumulateAndGet(in.readInt(), Math::max);
+                break;
+            case REC_CREATE: {
+                Appointment appointment = restoreAppointment(in);
+                claimSlot(appointment);
+                QueueManager queue = queues.get(appointment.getProfessorOrCounselor().getUsername());
+                if (queue != null) queue.addAppointment(appointment);
+                break;
+            }
+            case REC_APPOINTMENT: {
+                Appointment appointment = restoreAppointment(in);
+                appointment.setStatus(Journal.readString(in));
+                appointment.setPriority(in.readBoolean());
+                if (in.readBoolean()) claimSlot(appointment);
+                break;
+            }
+            case REC_NOTIFY: {
+                NotificationInbox inbox = inboxFor(Journal.readString(in));
+                String message = Journal.readString(in);
+                long seq = inbox.add(new Notification(message, Journal.readTime(in)));
+                if (in.readBoolean()) inbox.markRead(seq);
+                break;
+            }
+            case REC_INBOX: {
+                NotificationInbox inbox = inboxFor(Journal.readString(in));
+                long firstSeq = in.readLong();
+                inbox.restoreSequence(firstSeq, in.readLong());
+                break;
+            }
+            case REC_MARK_READ: {
+                NotificationInbox inbox = inboxFor(Journal.readString(in));
+                inbox.markRead(in.readLong());
+                break;
+            }
+            case REC_MARK_ALL_READ: {
+                NotificationInbox inbox = inboxFor(Journal.readString(in));
+                inbox.markReadBefore(in.readLong());
+                break;
+            }
+            default:
+                applyAppointmentRecord(type, in);
+        }
+    }
+
+    // Replays a record that changes an existing appointment
+    private void applyAppointmentRecord(byte type, DataInputStream in) throws IOException {
+        Appointment appointment = appointments.get(in.readInt());
+        if (appointment == null) return; // Only possible if the journal was edited
+        QueueManager queue = queues.get(appointment.getProfessorOrCounselor().getUsername());
+        switch (type) {
+            case REC_QUEUED:
+                if (queue != null) queue.addAppointment(appointment);
+                break;
+            case REC_CANCEL:
+                if (queue != null) queue.removeAppointment(appointment);
+                appointment.setStatus("CANCELLED");
+                releaseSlot(appointment);
+                break;
+            case REC_NEXT:
+                if (queue != null) queue.removeAppointment(appointment);
+                appointment.setStatus("IN_PROGRESS");
+                releaseSlot(appointment);
+                break;
+            case REC_STATUS:
+                changeStatus(appointment, Journal.readString(in));
+                break;
+            case REC_MISSED:
+                appointment.setStatus("MISSED");
+                releaseSlot(appointment);
+                break;
+            case REC_REMOVE:
+                if (appointment.getStatus().equals("CANCELLED")) releaseSlot(appointment);
+                appointments.remove(appointment.getId());
+                unindexAppointment(appointment);
+                break;
+            case REC_RESCHEDULE:
+                rescheduleAppointment(appointment, Journal.readTime(in));
+                break;
+            case REC_PRIORITY:
+                if (queue == null) break;
+                if (in.readBoolean()) {
+                    queue.promote(appointment);
+                } else {
+                    queue.setPriority(appointment, false);
+                }
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    // Creates, stores and indexes an appointment from the fields of a journal record
+    private Appointment restoreAppointment(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String student = Journal.readString(in);
+        String professorOrCounselor = Journal.readString(in);
+        LocalDateTime time = Journal.readTime(in);
+        String subject = Journal.readString(in);
+        return restoreAppointment(id, student, professorOrCounselor, time, subject, in.readInt());
+    }
+
+    private Appointment restoreAppointment(int id, String student, String professorOrCounselor,
+            LocalDateTime time, String subject, int duration) {
+        Appointment appointment = new Appointment(id, users.get(student), users.get(professorOrCounselor),
+            time, subject, duration);
+        appointments.put(id, appointment);
+        indexAppointment(appointment);
+        nextAppointmentId.accumulateAndGet(id + 1, Math::max);
+        return appointment;
+    }
+
+    // Writes the whole state to a binary snapshot that loadSnapshot reads back. The file is
+    // written next to the target and moved over it once complete.
+    public void saveSnapshot(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        lockAllProviders();
+        // Delivery takes the checkpoint read lock, so deliver before taking the write lock.
+        // Operations notify while holding their provider lock, so nothing is added meanwhile.
+        notificationPipeline.flush();
+        checkpointLock.writeLock().lock();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SnapshotWriter out = new SnapshotWriter(channel);
+            writeState(out);
+            out.finish();
+            channel.force(true);
+        } finally {
+            checkpointLock.writeLock().unlock();
+            unlockAllProviders();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Replaces the whole state with the one in a snapshot written by saveSnapshot. Nothing
+    // changes if the snapshot cannot be read. An open journal is checkpointed to match, and
+    // every change listener then gets a RELOADED event.
+    public void loadSnapshot(Path file) throws IOException {
+        lockAllProviders();
+        notificationPipeline.flush(); // Whatever is in flight belongs to the state being replaced; see saveSnapshot
+        checkpointLock.writeLock().lock();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ConsultationController loaded = new ConsultationController();
+            try {
+                SnapshotReader in = new SnapshotReader(channel);
+                loaded.readState(in);
+                in.finish();
+            } finally {
+                loaded.close(); // Only its state is kept
+            }
+            // Refill the maps in place: readers that take no lock keep seeing the same
+            // (thread-safe) maps, and the locks held here keep every other change out
+            replace(users, loaded.users);
+            replace(queues, loaded.queues);
+            replace(professorSchedules, loaded.professorSchedules);
+            replace(appointments, loaded.appointments);
+            replace(inboxes, loaded.inboxes);
+            replace(studentAppointments, loaded.studentAppointments);
+            replace(providerAppointments, loaded.providerAppointments);
+            slotHolders.clear();
+            slotHolders.addAll(loaded.slotHolders);
+            nextAppointmentId.set(loaded.nextAppointmentId.get());
+            slotUnits = loaded.slotUnits;
+            if (journal != null) {
+                journal.compact(stateRecords());
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+            unlockAllProviders();
+        }
+        // Every listener's view is stale now
+        for (String username : changeListeners.keySet()) {
+            fireChange(username, new ChangeEvent(ChangeEvent.Type.RELOADED, null, username));
+        }
+    }
+
+    private static <K, V> void replace(Map<K, V> target, Map<K, V> source) {
+        target.clear();
+        target.putAll(source);
+    }
+
+    // Snapshot layout, version 2. Strings go through the writer's string table; appointment
+    // times are epoch minutes. Everything is written in a fixed order, so equal states give
+    // equal files.
+    //   next appointment id, slot units
+    //   users: username, password, role, name, email, has calendar, subjects
+    //   appointments by id: id, student, provider, time, subject, duration, status, flags
+    //   queues: provider, priority tier ids in order, regular tier ids in order
+    //   inboxes: username, first sequence number, read watermark, then message and timestamp
+    //   of each notification, then the sequence numbers read above the watermark
+    //   (version 1 had no sequence numbers and a read flag per notification)
+    private void writeState(SnapshotWriter out) throws IOException {
+        out.putInt(nextAppointmentId.get());
+        out.putByte(slotUnits);
+        out.putVarInt(users.size());
+        for (User user : new TreeMap<>(users).values()) {
+            out.putString(user.getUsername());
+            out.putString(user.getPassword());
+            out.putString(user.getRole());
+            out.putString(user.getName());
+            out.putString(user.getEmail());
+            out.putBoolean(professorSchedules.containsKey(user.getUsername()));
+            out.putVarInt(user.getSubjects().size());
+            for (String subject : user.getSubjects()) {
+                out.putString(subject);
+            }
+        }
+        List<Appointment> byId = new ArrayList<>(appointments.values());
+        byId.sort(Comparator.comparingInt(Appointment::getId));
+        out.putVarInt(byId.size());
+        for (Appointment app : byId) {
+            out.putInt(app.getId());
+            out.putString(app.getStudent().getUsername());
+            out.putString(app.getProfessorOrCounselor().getUsername());
+            out.putEpochMinute(app.getAppointmentTime());
+            out.putString(app.getSubject());
+            out.putVarInt(app.getEstimatedDuration());
+            out.putString(app.getStatus());
+            out.putByte((app.isPriority() ? 1 : 0) | (slotHolders.contains(app.getId()) ? 2 : 0));
+        }
+        out.putVarInt(queues.size());
+        for (Map.Entry<String, QueueManager> entry : new TreeMap<>(queues).entrySet()) {
+            out.putString(entry.getKey());
+            writeIds(out, entry.getValue().getPriorityQueue());
+            writeIds(out, entry.getValue().getRegularQueue());
+        }
+        out.putVarInt(inboxes.size());
+        for (Map.Entry<String, NotificationInbox> entry : new TreeMap<>(inboxes).entrySet()) {
+            NotificationInbox inbox = entry.getValue();
+            out.putString(entry.getKey());
+            out.putLong(inbox.getFirstSeq());
+            out.putLong(inbox.getReadWatermark());
+            List<Notification> notifications = inbox.getAll();
+            out.putVarInt(notifications.size());
+            for (Notification notification : notifications) {
+                out.putString(notification.getMessage());
+                out.putTimestamp(notification.getTimestamp());
+            }
+            List<Long> readAbove = inbox.getReadAboveWatermark();
+            Collections.sort(readAbove);
+            out.putVarInt(readAbove.size());
+            for (long seq : readAbove) {
+                out.putLong(seq);
+            }
+        }
+    }
+
+    private static NavigableSet<Appointment> timeOrderedSet(List<Appointment> list) {
+        list.sort(BY_TIME);
+        NavigableSet<Appointment> set = new ConcurrentSkipListSet<>(BY_TIME);
+        set.addAll(list);
+        return set;
+    }
+
+    private static void writeIds(SnapshotWriter out, Collection<Appointment> queue) throws IOException {
+        out.putVarInt(queue.size());
+        for (Appointment app : queue) {
+            out.putVarInt(app.getId());
+        }
+    }
+
+    // Reads what writeState wrote into this controller, which must be new (see loadSnapshot). Calendars are
+    // rebuilt for today from the appointments that held a slot.
+    private void readState(SnapshotReader in) throws IOException {
+        Map<String, List<Appointment>> byStudent = new HashMap<>();
+        Map<String, List<Appointment>> byProvider = new HashMap<>();
+        nextAppointmentId.set(in.getInt());
+        slotUnits = in.getByte();
+        LocalDate today = LocalDate.now();
+        for (int i = in.getVarInt(); i > 0; i--) {
+            String username = in.getString();
+            String password = in.getString();
+            String role = in.getString();
+            String name = in.getString();
+            User user = addUser(username, password, role, name, in.getString());
+            if (in.getBoolean()) {
+                professorSchedules.put(username, new ProviderCalendar(today, MAX_DAYS_AHEAD, OPEN_UNITS, slotUnits));
+            }
+            for (int s = in.getVarInt(); s > 0; s--) {
+                user.addSubject(in.getString());
+            }
+        }
+        for (int i = in.getVarInt(); i > 0; i--) {
+            int id = in.getInt();
+            String student = in.getString();
+            String professorOrCounselor = in.getString();
+            LocalDateTime time = in.getEpochMinute();
+            String subject = in.getString();
+            Appointment appointment = new Appointment(id, users.get(student), users.get(professorOrCounselor),
+                time, subject, in.getVarInt());
+            appointments.put(id, appointment);
+            byStudent.computeIfAbsent(student, k -> new ArrayList<>()).add(appointment);
+            byProvider.computeIfAbsent(professorOrCounselor, k -> new ArrayList<>()).add(appointment);
+            appointment.setStatus(in.getString());
+            int flags = in.getByte();
+            appointment.setPriority((flags & 1) != 0);
+            if ((flags & 2) != 0) {
+                claimSlot(appointment);
+            }
+        }
+        // Filling the time-ordered indexes in time order is much cheaper than in id order
+        byStudent.forEach((username, list) -> studentAppointments.put(username, timeOrderedSet(list)));
+        byProvider.forEach((username, list) -> providerAppointments.put(username, timeOrderedSet(list)));
+        for (int i = in.getVarInt(); i > 0; i--) {
+            QueueManager queue = queues.get(in.getString());
+            for (int tier = 0; tier < 2; tier++) {
+                for (int n = in.getVarInt(); n > 0; n--) {
+                    Appointment appointment = appointments.get(in.getVarInt());
+                    if (queue != null && appointment != null) {
+                        queue.addAppointment(appointment);
+                    }
+                }
+            }
+        }
+        for (int i = in.getVarInt(); i > 0; i--) {
+            NotificationInbox inbox = inboxFor(in.getString());
+            if (in.getVersion() == 1) {
+                for (int n = in.getVarInt(); n > 0; n--) {
+                    String message = in.getString();
+                    long seq = inbox.add(new Notification(message, in.getTimestamp()));
+                    if (in.getBoolean()) inbox.markRead(seq);
+                }
+                continue;
+            }
+            long firstSeq = in.getLong();
+            inbox.restoreSequence(firstSeq, in.getLong());
+            for (int n = in.getVarInt(); n > 0; n--) {
+                String message = in.getString();
+                inbox.add(new Notification(message, in.getTimestamp()));
+            }
+            for (int n = in.getVarInt(); n > 0; n--) {
+                inbox.markRead(in.getLong());
+            }
+        }
     }
 } 
\ No newline at end of file
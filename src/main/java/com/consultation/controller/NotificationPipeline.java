@@ -0,0 +1,246 @@
+package com.consultation.controller;
+
+import com.consultation.model.Notification;
+import com.consultation.util.Log;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands notifications from the threads that create them to their recipients' inboxes.
+ * Producers only put an event on a queue; a delivery thread drains it, groups the events
+ * by recipient and delivers each group in one call. Every delivery, whoever runs it, holds
+ * the delivery lock and takes events in queue order, so a recipient always receives its
+ * notifications in the order they were submitted.
+ *
+ * Submitting never blocks and never delivers, so it is safe while holding locks. The
+ * capacity bounds the queue through awaitCapacity instead: producers call it once they
+ * have released their locks, and wait there while the queue is over capacity. Nothing is
+ * dropped.
+ *
+ * Closing delivers what is queued and stops the delivery thread. Anything submitted after
+ * that is delivered by the next awaitCapacity or flush.
+ */
+public class NotificationPipeline {
+    // Receives one recipient's share of a drained batch, in submission order
+    public interface Delivery {
+        void deliver(String recipient, List<Notification> notifications);
+    }
+
+    private static final int MAX_BATCH = 256; // Events taken off the queue per delivery pass
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final class Event {
+        private final String recipient;
+        private final Notification notification;
+
+        private Event(String recipient, Notification notification) {
+            this.recipient = recipient;
+            this.notification = notification;
+        }
+    }
+
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final int capacity;
+    private final Delivery delivery;
+    private final Object space = new Object(); // Producers waiting in awaitCapacity wait on this
+    private final AtomicInteger waiting = new AtomicInteger(); // Producers waiting for space
+    private final ReentrantLock deliveryLock = new ReentrantLock();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile Thread worker; // Started on the first submit
+    private volatile boolean idle; // The worker is parked or about to park
+    private volatile boolean closed;
+
+    // Backpressure metrics
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    public NotificationPipeline(int capacity, Delivery delivery) {
+        this.capacity = capacity;
+        this.delivery = delivery;
+    }
+
+    public void submit(String recipient, Notification notification) {
+        submitted.incrementAndGet();
+        highWaterMark.accumulateAndGet(pending.incrementAndGet(), Math::max);
+        queue.add(new Event(recipient, notification));
+        startWorker();
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    // Backpressure for producers: waits while the queue is over capacity. Call it after
+    // submitting, once no locks are held that delivery or other producers may need. When
+    // the pipeline is closed it delivers the queue on the calling thread instead.
+    public void awaitCapacity() {
+        if (pending.get() < capacity && !closed) return;
+        if (closed) {
+            flush();
+            return;
+        }
+        throttled.incrementAndGet();
+        long start = System.nanoTime();
+        synchronized (space) {
+            waiting.incrementAndGet();
+            try {
+                while (pending.get() >= capacity && !closed) {
+                    space.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        throttledNanos.addAndGet(System.nanoTime() - start);
+        if (closed) {
+            flush();
+        }
+    }
+
+    // Delivers everything submitted before the call before returning, on the caller's
+    // thread if the worker has not got to it yet
+    public void flush() {
+        deliveryLock.lock();
+        try {
+            drainAndDeliver();
+        } finally {
+            deliveryLock.unlock();
+        }
+    }
+
+    // Delivers everything queued and stops the delivery thread, waiting for it to finish
+    // the batch it is on. Safe to call more than once.
+    public void close() {
+        closed = true;
+        wakeWaiting();
+        Thread thread = worker;
+        if (thread != null && thread != Thread.currentThread()) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush(); // Whatever was submitted while the worker was stopping
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    // Delivery passes; delivered / batches is the average batch size
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    // Calls to awaitCapacity that found the queue over capacity and had to wait
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    // Time producers spent waiting in awaitCapacity, in total
+    public long getThrottledNanos() {
+        return throttledNanos.get();
+    }
+
+    // Submitted but not delivered yet
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    // Most notifications ever waiting at once
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    private void startWorker() {
+        if (started.get() || closed || !started.compareAndSet(false, true)) return;
+        Thread thread = new Thread(this::run, "notification-delivery");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    private void run() {
+        while (true) {
+            if (queue.isEmpty()) {
+                if (closed) return;
+                idle = true;
+                // Re-check after announcing, so a submit or close in between is not missed
+                if (queue.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+            deliveryLock.lock();
+            try {
+                drainAndDeliver();
+            } finally {
+                deliveryLock.unlock();
+            }
+        }
+    }
+
+    // Caller must hold the delivery lock
+    private void drainAndDeliver() {
+        List<Event> batch = new ArrayList<>();
+        Event event;
+        while ((event = queue.poll()) != null) {
+            batch.add(event);
+            if (batch.size() == MAX_BATCH || queue.isEmpty()) {
+                deliver(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Caller must hold the delivery lock
+    private void deliver(List<Event> batch) {
+        Map<String, List<Notification>> byRecipient = new LinkedHashMap<>();
+        for (Event event : batch) {
+            byRecipient.computeIfAbsent(event.recipient, k -> new ArrayList<>()).add(event.notification);
+        }
+        for (Map.Entry<String, List<Notification>> entry : byRecipient.entrySet()) {
+            try {
+                delivery.deliver(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                Log.error("Delivering notifications to " + entry.getKey() + " failed: " + e);
+            }
+        }
+        delivered.addAndGet(batch.size());
+        batches.incrementAndGet();
+        if (pending.addAndGet(-batch.size()) < capacity) {
+            wakeWaiting();
+        }
+    }
+
+    private void wakeWaiting() {
+        if (waiting.get() > 0) {
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+    }
+}
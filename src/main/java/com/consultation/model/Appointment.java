@@ -6,9 +6,10 @@ public class Appointment {
     private int id;
     private User student;
     private User professorOrCounselor;
-    private LocalDateTime appointmentTime;
-    private String status; // "PENDING", "IN_PROGRESS", "COMPLETED", "CANCELLED"
-    private boolean isPriority;
+    // Changed under the provider's lock but read by other threads, so kept volatile
+    private volatile LocalDateTime appointmentTime;
+    private volatile String status; // "PENDING", "IN_PROGRESS", "COMPLETED", "CANCELLED"
+    private volatile boolean isPriority;
     private String subject; // For professor appointments only
     private int estimatedDuration; // in minutes
 
@@ -0,0 +1,220 @@
+package com.consultation.model;
+
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class AppointmentQueue extends AbstractQueue<Appointment> {
+    // Doubly-linked FIFO; every queued appointment keeps a handle to its node,
+    // so removing it from the middle of the queue does not need a scan
+    private static class Node {
+        private Appointment appointment;
+        private int duration; // Duration counted into totalMinutes when the node was queued
+        private int seq; // Arrival position in the prefix-sum trees
+        private Node prev;
+        private Node next;
+
+        private Node(Appointment appointment) {
+            this.appointment = appointment;
+            this.duration = appointment.getEstimatedDuration();
+        }
+    }
+
+    private Node head;
+    private Node tail;
+    private Map<Integer, Node> handles; // Appointment id -> queue node
+    private int modCount;
+    // Running aggregates, kept on every change so readers never walk the queue
+    private volatile int count;
+    private volatile int totalMinutes;
+    // Prefix sums over arrival positions, for "how many / how long ahead of me" queries
+    private FenwickTree countsBySeq;
+    private FenwickTree minutesBySeq;
+    private int nextSeq;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    public AppointmentQueue() {
+        this.handles = new HashMap<>();
+        this.countsBySeq = new FenwickTree(INITIAL_CAPACITY);
+        this.minutesBySeq = new FenwickTree(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public boolean offer(Appointment appointment) {
+        if (appointment == null) {
+            throw new NullPointerException();
+        }
+        if (handles.containsKey(appointment.getId())) {
+            return false; // Already waiting in this queue
+        }
+        if (nextSeq == countsBySeq.size()) {
+            renumber();
+        }
+        Node node = new Node(appointment);
+        node.seq = nextSeq++;
+        countsBySeq.add(node.seq, 1);
+        minutesBySeq.add(node.seq, node.duration);
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+            node.prev = tail;
+        }
+        tail = node;
+        handles.put(appointment.getId(), node);
+        count++;
+        totalMinutes += node.duration;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Appointment poll() {
+        if (head == null) {
+            return null;
+        }
+        Appointment appointment = head.appointment;
+        unlink(head);
+        return appointment;
+    }
+
+    @Override
+    public Appointment peek() {
+        return head != null ? head.appointment : null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Appointment && handles.containsKey(((Appointment) o).getId());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Appointment)) {
+            return false;
+        }
+        Node node = handles.get(((Appointment) o).getId());
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        head = null;
+        tail = null;
+        handles.clear();
+        count = 0;
+        totalMinutes = 0;
+        countsBySeq = new FenwickTree(INITIAL_CAPACITY);
+        minutesBySeq = new FenwickTree(INITIAL_CAPACITY);
+        nextSeq = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public int getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    // 1-based position of the appointment in this queue, or -1 if it is not queued here
+    public int positionOf(Appointment appointment) {
+        Node node = handles.get(appointment.getId());
+        return node != null ? (int) countsBySeq.prefixSum(node.seq) + 1 : -1;
+    }
+
+    // Minutes of the appointments queued before this one, or -1 if it is not queued here
+    public int minutesAhead(Appointment appointment) {
+        Node node = handles.get(appointment.getId());
+        return node != null ? (int) minutesBySeq.prefixSum(node.seq) : -1;
+    }
+
+    @Override
+    public Iterator<Appointment> iterator() {
+        return new Iterator<Appointment>() {
+            private Node next = head;
+            private Node lastReturned;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Appointment next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = next.next;
+                return lastReturned.appointment;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                unlink(lastReturned);
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    private void unlink(Node node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        handles.remove(node.appointment.getId());
+        countsBySeq.add(node.seq, -1);
+        minutesBySeq.add(node.seq, -node.duration);
+        count--;
+        totalMinutes -= node.duration;
+        modCount++;
+    }
+
+    // Arrival positions only grow, so when they run out give the live nodes
+    // positions 0..count-1 again in queue order and rebuild the trees
+    private void renumber() {
+        int capacity = Math.max(INITIAL_CAPACITY, count * 2);
+        long[] counts = new long[capacity];
+        long[] minutes = new long[capacity];
+        int seq = 0;
+        for (Node node = head; node != null; node = node.next) {
+            node.seq = seq;
+            counts[seq] = 1;
+            minutes[seq] = node.duration;
+            seq++;
+        }
+        countsBySeq = new FenwickTree(counts);
+        minutesBySeq = new FenwickTree(minutes);
+        nextSeq = seq;
+    }
+}
@@ -0,0 +1,337 @@
+package com.consultation.model;
+
+import java.time.LocalDateTime;
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class AppointmentTreap extends AbstractQueue<Appointment> {
+    // Treap ordered by (appointment time, arrival): a search tree on that key and a heap on
+    // random priorities, so it stays balanced in expectation. Every node also carries the
+    // count and minutes of its subtree, which makes "how many / how long ahead of me" one
+    // descent from the root. Every queued appointment keeps a handle to its entry, so
+    // removing or re-keying an appointment is O(log n). Appointments with the same time
+    // leave in the order they arrived.
+    private static class Entry {
+        private Appointment appointment;
+        private LocalDateTime time; // Key the entry is ordered by; see update()
+        private long seq; // Arrival order, breaks ties between equal times
+        private int duration; // Duration counted into totalMinutes when the entry was queued
+        private int priority; // Random heap priority, higher sits nearer the root
+        private Entry left;
+        private Entry right;
+        private int subtreeCount;
+        private int subtreeMinutes;
+
+        private Entry(Appointment appointment, long seq, int priority) {
+            this.appointment = appointment;
+            this.time = appointment.getAppointmentTime();
+            this.seq = seq;
+            this.duration = appointment.getEstimatedDuration();
+            this.priority = priority;
+            this.subtreeCount = 1;
+            this.subtreeMinutes = duration;
+        }
+
+        private boolean before(Entry other) {
+            int byTime = time.compareTo(other.time);
+            return byTime < 0 || (byTime == 0 && seq < other.seq);
+        }
+    }
+
+    private Entry root;
+    private Map<Integer, Entry> handles; // Appointment id -> tree entry
+    private long nextSeq;
+    private int nextPriority = 0x2545F491; // Xorshift state; fixed seed keeps runs repeatable
+    private int modCount;
+    // Running aggregates, kept on every change so readers never walk the tree
+    private volatile int count;
+    private volatile int totalMinutes;
+
+    public AppointmentTreap() {
+        this.handles = new HashMap<>();
+    }
+
+    @Override
+    public boolean offer(Appointment appointment) {
+        if (appointment == null) {
+            throw new NullPointerException();
+        }
+        if (handles.containsKey(appointment.getId())) {
+            return false; // Already waiting in this queue
+        }
+        Entry entry = new Entry(appointment, nextSeq++, randomPriority());
+        root = insert(root, entry);
+        handles.put(appointment.getId(), entry);
+        count++;
+        totalMinutes += entry.duration;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Appointment poll() {
+        Entry first = first();
+        if (first == null) {
+            return null;
+        }
+        removeEntry(first);
+        return first.appointment;
+    }
+
+    @Override
+    public Appointment peek() {
+        Entry first = first();
+        return first != null ? first.appointment : null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Appointment && handles.containsKey(((Appointment) o).getId());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Appointment)) {
+            return false;
+        }
+        Entry entry = handles.get(((Appointment) o).getId());
+        if (entry == null) {
+            return false;
+        }
+        removeEntry(entry);
+        return true;
+    }
+
+    // Re-keys the appointment after its time changed. Keeps its arrival order, so it still
+    // goes before later arrivals with the same time. Returns false if it is not queued here.
+    public boolean update(Appointment appointment) {
+        Entry entry = handles.get(appointment.getId());
+        if (entry == null) {
+            return false;
+        }
+        // Unlink under the old key, then put it back under the new one
+        root = delete(root, entry);
+        entry.time = appointment.getAppointmentTime();
+        entry.left = null;
+        entry.right = null;
+        pull(entry);
+        root = insert(root, entry);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        handles.clear();
+        count = 0;
+        totalMinutes = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    public int getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    // 1-based position of the appointment in this queue, or -1 if it is not queued here
+    public int positionOf(Appointment appointment) {
+        Entry entry = handles.get(appointment.getId());
+        return entry != null ? (int) ahead(entry, false) + 1 : -1;
+    }
+
+    // Minutes of the appointments queued before this one, or -1 if it is not queued here
+    public int minutesAhead(Appointment appointment) {
+        Entry entry = handles.get(appointment.getId());
+        return entry != null ? (int) ahead(entry, true) : -1;
+    }
+
+    // Iterates in queue order, finding each next entry by its key, so removing through
+    // the iterator does not disturb it. O(log n) per step.
+    @Override
+    public Iterator<Appointment> iterator() {
+        return new Iterator<Appointment>() {
+            private Entry next = first();
+            private Entry lastReturned;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Appointment next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = successor(next);
+                return lastReturned.appointment;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeEntry(lastReturned);
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    private void removeEntry(Entry entry) {
+        root = delete(root, entry);
+        entry.left = null;
+        entry.right = null;
+        handles.remove(entry.appointment.getId());
+        count--;
+        totalMinutes -= entry.duration;
+        modCount++;
+    }
+
+    // Sums the entries ordered before this one: every time the descent goes right, the
+    // node and its left subtree are ahead
+    private long ahead(Entry entry, boolean minutes) {
+        long sum = 0;
+        Entry node = root;
+        while (node != entry) {
+            if (entry.before(node)) {
+                node = node.left;
+            } else {
+                sum += minutes ? minutesOf(node.left) + node.duration : countOf(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return sum + (minutes ? minutesOf(entry.left) : countOf(entry.left));
+    }
+
+    private Entry first() {
+        Entry node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    // First entry ordered after the given key; the entry itself need not be in the tree
+    private Entry successor(Entry entry) {
+        Entry found = null;
+        Entry node = root;
+        while (node != null) {
+            if (entry.before(node)) {
+                found = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return found;
+    }
+
+    private Entry insert(Entry node, Entry entry) {
+        if (node == null) {
+            return entry;
+        }
+        if (entry.priority > node.priority) {
+            split(node, entry);
+            pull(entry);
+            return entry;
+        }
+        if (entry.before(node)) {
+            node.left = insert(node.left, entry);
+        } else {
+            node.right = insert(node.right, entry);
+        }
+        pull(node);
+        return node;
+    }
+
+    // Splits the subtree around the key into entry.left (before it) and entry.right (after)
+    private void split(Entry node, Entry entry) {
+        if (node == null) {
+            entry.left = null;
+            entry.right = null;
+            return;
+        }
+        if (node.before(entry)) {
+            split(node.right, entry);
+            node.right = entry.left;
+            pull(node);
+            entry.left = node;
+        } else {
+            split(node.left, entry);
+            node.left = entry.right;
+            pull(node);
+            entry.right = node;
+        }
+    }
+
+    private Entry delete(Entry node, Entry entry) {
+        if (node == entry) {
+            return merge(node.left, node.right);
+        }
+        if (entry.before(node)) {
+            node.left = delete(node.left, entry);
+        } else {
+            node.right = delete(node.right, entry);
+        }
+        pull(node);
+        return node;
+    }
+
+    // Joins two subtrees where everything in the first goes before the second
+    private Entry merge(Entry first, Entry second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        if (first.priority > second.priority) {
+            first.right = merge(first.right, second);
+            pull(first);
+            return first;
+        }
+        second.left = merge(first, second.left);
+        pull(second);
+        return second;
+    }
+
+    private void pull(Entry node) {
+        node.subtreeCount = 1 + countOf(node.left) + countOf(node.right);
+        node.subtreeMinutes = node.duration + minutesOf(node.left) + minutesOf(node.right);
+    }
+
+    private static int countOf(Entry node) {
+        return node != null ? node.subtreeCount : 0;
+    }
+
+    private static int minutesOf(Entry node) {
+        return node != null ? node.subtreeMinutes : 0;
+    }
+
+    private int randomPriority() {
+        int x = nextPriority;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        nextPriority = x;
+        return x;
+    }
+}
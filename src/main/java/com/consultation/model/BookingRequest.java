@@ -0,0 +1,31 @@
+package com.consultation.model;
+
+public class BookingRequest {
+    private User student;
+    private User professorOrCounselor;
+    private String subject;
+    private int duration; // Requested duration in minutes
+
+    public BookingRequest(User student, User professorOrCounselor, String subject, int duration) {
+        this.student = student;
+        this.professorOrCounselor = professorOrCounselor;
+        this.subject = subject;
+        this.duration = duration;
+    }
+
+    public User getStudent() {
+        return student;
+    }
+
+    public User getProfessorOrCounselor() {
+        return professorOrCounselor;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,41 @@
+package com.consultation.model;
+
+public class FenwickTree {
+    // Binary indexed tree over positions 0..size-1; tree[] is 1-based internally
+    private long[] tree;
+
+    public FenwickTree(int size) {
+        this.tree = new long[size + 1];
+    }
+
+    // Builds the tree from plain values in O(n)
+    public FenwickTree(long[] values) {
+        this.tree = new long[values.length + 1];
+        for (int i = 1; i <= values.length; i++) {
+            tree[i] += values[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= values.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    public int size() {
+        return tree.length - 1;
+    }
+
+    public void add(int index, long delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Sum of the values at positions [0, index)
+    public long prefixSum(int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
@@ -5,12 +5,17 @@ import java.time.LocalDateTime;
 public class Notification {
     private String message;
     private LocalDateTime timestamp;
-    private boolean read;
+    private long seq; // Position in the recipient's inbox, set when it is delivered there
 
     public Notification(String message) {
         this.message = message;
         this.timestamp = LocalDateTime.now();
-        this.read = false;
+    }
+
+    // Restores a notification saved earlier
+    public Notification(String message, LocalDateTime timestamp) {
+        this.message = message;
+        this.timestamp = timestamp;
     }
 
     public String getMessage() {
@@ -21,11 +26,13 @@ public class Notification {
         return timestamp;
     }
 
-    public boolean isRead() {
-        return read;
+    // Sequence number in the recipient's inbox, or 0 before delivery. Whether it has been
+    // read is kept by the inbox.
+    public long getSeq() {
+        return seq;
     }
 
-    public void markAsRead() {
-        this.read = true;
+    void setSeq(long seq) {
+        this.seq = seq;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package com.consultation.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class NotificationInbox {
+    // A user's most recent notifications in a ring buffer of at most `capacity` entries;
+    // when it is full the oldest one is dropped. Every notification gets the next sequence
+    // number, so entry i of the ring holds sequence number firstSeq + i (counted from head).
+    //
+    // Read state is a watermark: everything below readUpTo is read. Notifications read out
+    // of order above it are kept in readAbove until the watermark catches up, so the unread
+    // count and marking everything read are O(1). Safe for concurrent use.
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private Notification[] ring; // Grows by doubling up to capacity
+    private int head; // Ring index of the oldest entry
+    private int count;
+    private long firstSeq = 1; // Sequence number of the oldest entry
+    private long readUpTo = 1; // Every sequence number below this is read
+    private Set<Long> readAbove = new HashSet<>(); // Read sequence numbers at or above readUpTo
+
+    public NotificationInbox(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Inbox capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ring = new Notification[Math.min(capacity, INITIAL_CAPACITY)];
+    }
+
+    // Appends the notification and returns its sequence number
+    public synchronized long add(Notification notification) {
+        if (count == ring.length && ring.length < capacity) {
+            grow();
+        }
+        if (count == ring.length) {
+            // Full: the oldest entry makes room, and is read as far as the counts are concerned
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            count--;
+            readAbove.remove(firstSeq);
+            firstSeq++;
+            if (readUpTo < firstSeq) {
+                readUpTo = firstSeq;
+                while (readAbove.remove(readUpTo)) {
+                    readUpTo++;
+                }
+            }
+        }
+        long seq = firstSeq + count;
+        notification.setSeq(seq);
+        ring[(head + count) % ring.length] = notification;
+        count++;
+        return seq;
+    }
+
+    public synchronized void addAll(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            add(notification);
+        }
+    }
+
+    // Sequence number of the oldest notification still held
+    public synchronized long getFirstSeq() {
+        return firstSeq;
+    }
+
+    // Sequence number the next notification will get
+    public synchronized long getNextSeq() {
+        return firstSeq + count;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int getUnreadCount() {
+        return (int) (firstSeq + count - readUpTo) - readAbove.size();
+    }
+
+    public synchronized boolean isRead(long seq) {
+        return seq < readUpTo || readAbove.contains(seq);
+    }
+
+    // Everything below this sequence number is read
+    public synchronized long getReadWatermark() {
+        return readUpTo;
+    }
+
+    // Read notifications at or above the watermark, in no particular order
+    public synchronized List<Long> getReadAboveWatermark() {
+        return new ArrayList<>(readAbove);
+    }
+
+    // Returns false if the notification was already read or is not held here
+    public synchronized boolean markRead(long seq) {
+        if (seq < readUpTo || seq >= firstSeq + count || !readAbove.add(seq)) {
+            return false;
+        }
+        while (readAbove.remove(readUpTo)) {
+            readUpTo++;
+        }
+        return true;
+    }
+
+    public synchronized void markAllRead() {
+        readUpTo = firstSeq + count;
+        if (!readAbove.isEmpty()) {
+            readAbove = new HashSet<>();
+        }
+    }
+
+    // Marks everything below the given sequence number read, e.g. to repeat a markAllRead
+    // that happened when that was the next sequence number
+    public synchronized void markReadBefore(long seq) {
+        if (seq >= firstSeq + count) {
+            markAllRead();
+            return;
+        }
+        if (seq <= readUpTo) return;
+        readAbove.removeIf(read -> read < seq);
+        readUpTo = seq;
+        while (readAbove.remove(readUpTo)) {
+            readUpTo++;
+        }
+    }
+
+    // Notifications with sequence numbers in [fromSeq, toSeq), oldest first. Parts of the
+    // range that were dropped or not used yet are skipped.
+    public synchronized List<Notification> getRange(long fromSeq, long toSeq) {
+        long from = Math.max(fromSeq, firstSeq);
+        long to = Math.min(toSeq, firstSeq + count);
+        List<Notification> page = new ArrayList<>((int) Math.max(0, to - from));
+        for (long seq = from; seq < to; seq++) {
+            page.add(ring[(int) ((head + seq - firstSeq) % ring.length)]);
+        }
+        return page;
+    }
+
+    public synchronized List<Notification> getAll() {
+        return getRange(firstSeq, firstSeq + count);
+    }
+
+    // Restores the counters of an inbox saved earlier; only allowed while it is empty
+    public synchronized void restoreSequence(long firstSeq, long readUpTo) {
+        if (count != 0) {
+            throw new IllegalStateException("Inbox is not empty");
+        }
+        this.firstSeq = firstSeq;
+        this.readUpTo = Math.max(readUpTo, firstSeq);
+    }
+
+    private void grow() {
+        Notification[] grown = new Notification[Math.min(capacity, ring.length * 2)];
+        for (int i = 0; i < count; i++) {
+            grown[i] = ring[(head + i) % ring.length];
+        }
+        Arrays.fill(ring, null);
+        ring = grown;
+        head = 0;
+    }
+}
@@ -0,0 +1,302 @@
+package com.consultation.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ProviderCalendar {
+    // Availability of one professor/counselor over a horizon of days. Every day is a single
+    // long whose bits are the day's 15-minute units counted from DAY_START; a set bit means
+    // the unit is booked. TimeSlot objects are only created as views when someone asks.
+    //
+    // Days live in a ring indexed by epoch day modulo the horizon length, so rolling the
+    // horizon forward only clears the slots of the days that fell off. Everything outside
+    // the ring helpers works with day offsets from the start of the horizon.
+    public static final int UNIT_MINUTES = 15;
+    public static final LocalTime DAY_START = LocalTime.of(9, 0);
+
+    private long firstEpochDay; // First day of the horizon
+    private final long[] busy; // Booked units per day, at ring slot epochDay % days
+    private final long openUnits; // Units of a day that belong to the schedule
+    private final long slotStarts; // Units where a booking may begin
+    private final int slotUnits; // Grid size in units; bookings are rounded up to whole slots
+    // Segment tree over the ring slots (leaves at leafBase + slot) holding the longest run of
+    // free units in each subtree, so days that cannot fit a booking are skipped in O(log n).
+    // Runs never cross midnight, so a day's run is all the tree needs to know about it.
+    private final byte[] longestRun;
+    private final int leafBase;
+    // No unit before (cursorDay, cursorUnit) is free. Bookings fill the calendar from the
+    // front, so searches start here instead of at day 0; cursorDay == days means all full.
+    private int cursorDay;
+    private int cursorUnit;
+
+    // openUnits marks the units of a day that belong to the schedule (see unitMask)
+    public ProviderCalendar(LocalDate firstDay, int days, long openUnits, int slotUnits) {
+        this.firstEpochDay = firstDay.toEpochDay();
+        this.busy = new long[days];
+        this.openUnits = openUnits;
+        this.slotUnits = slotUnits;
+        long starts = 0;
+        for (int unit = 0; unit < Long.SIZE; unit += slotUnits) {
+            starts |= 1L << unit;
+        }
+        this.slotStarts = starts & openUnits;
+        int base = 1;
+        while (base < days) {
+            base <<= 1;
+        }
+        this.leafBase = base;
+        this.longestRun = new byte[2 * base];
+        rebuildTree();
+    }
+
+    // Bits for the units covering [from, to)
+    public static long unitMask(LocalTime from, LocalTime to) {
+        int first = unitOf(from);
+        int end = unitOf(to);
+        if (first < 0 || end < first || end > Long.SIZE) {
+            throw new IllegalArgumentException("Range must lie on the unit grid within a day: " + from + "-" + to);
+        }
+        return end == Long.SIZE ? -1L << first : ((1L << end) - 1) & (-1L << first);
+    }
+
+    public LocalDate getFirstDay() {
+        return LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    public int getDays() {
+        return busy.length;
+    }
+
+    public int getSlotMinutes() {
+        return slotUnits * UNIT_MINUTES;
+    }
+
+    // Moves the horizon so it starts at the given day. Days that fall off are forgotten
+    // and their ring slots are reused, empty, for the days that come in; days still in
+    // range keep their bookings. Costs O(log n) per day rolled.
+    public void rollTo(LocalDate day) {
+        long shift = day.toEpochDay() - firstEpochDay;
+        if (shift <= 0) return;
+        if (shift < busy.length) {
+            for (int dropped = 0; dropped < shift; dropped++) {
+                busy[slot(dropped)] = 0L;
+                updateTree(dropped);
+            }
+        } else {
+            Arrays.fill(busy, 0L);
+            rebuildTree();
+        }
+        firstEpochDay = day.toEpochDay();
+        cursorDay = (int) Math.max(0, cursorDay - shift);
+        if (cursorDay == 0) cursorUnit = 0;
+    }
+
+    // Books every unit the booking covers, starting at the given time, all or nothing.
+    // Fails if the time is not a slot start in the horizon or any covered unit is closed
+    // or already taken.
+    public boolean claim(LocalDateTime start, int minutes) {
+        int day = dayOffset(start.toLocalDate());
+        int unit = unitOf(start.toLocalTime());
+        int units = unitsFor(minutes);
+        if (day < 0 || unit < 0 || unit + units > Long.SIZE || (slotStarts & (1L << unit)) == 0) {
+            return false;
+        }
+        long covered = runMask(unit, units);
+        if ((covered & ~openUnits) != 0 || (busy[slot(day)] & covered) != 0) {
+            return false;
+        }
+        busy[slot(day)] |= covered;
+        updateTree(day);
+        if (day == cursorDay) {
+            advanceCursor();
+        }
+        return true;
+    }
+
+    // Frees the units of a booking made with claim
+    public void release(LocalDateTime start, int minutes) {
+        int day = dayOffset(start.toLocalDate());
+        int unit = unitOf(start.toLocalTime());
+        int units = unitsFor(minutes);
+        if (day >= 0 && unit >= 0 && unit + units <= Long.SIZE) {
+            busy[slot(day)] &= ~runMask(unit, units);
+            updateTree(day);
+            if (day < cursorDay || (day == cursorDay && unit < cursorUnit)) {
+                cursorDay = day;
+                cursorUnit = unit;
+            }
+        }
+    }
+
+    // Start of the earliest run of free units at or after notBefore (null: from the start
+    // of the horizon) that fits the booking, or null if there is none
+    public LocalDateTime findFirstFree(LocalDateTime notBefore, int minutes) {
+        int units = unitsFor(minutes);
+        if (units > Long.SIZE) {
+            return null;
+        }
+        int day = 0;
+        long allowed = -1L;
+        if (notBefore != null) {
+            long offset = notBefore.toLocalDate().toEpochDay() - firstEpochDay;
+            if (offset >= busy.length) return null;
+            if (offset >= 0) {
+                day = (int) offset;
+                int seconds = notBefore.toLocalTime().toSecondOfDay() - DAY_START.toSecondOfDay();
+                int firstUnit = seconds <= 0 ? 0 : Math.floorDiv(seconds + UNIT_MINUTES * 60 - 1, UNIT_MINUTES * 60);
+                allowed = firstUnit >= Long.SIZE ? 0L : -1L << firstUnit;
+            }
+        }
+        // Nothing before the cursor is free
+        if (day < cursorDay) {
+            day = cursorDay;
+            allowed = -1L << cursorUnit;
+        } else if (day == cursorDay) {
+            allowed &= -1L << cursorUnit;
+        }
+        while (day >= 0 && day < busy.length) {
+            long fits = fitStarts(day, units) & allowed;
+            if (fits != 0) {
+                return LocalDateTime.of(LocalDate.ofEpochDay(firstEpochDay + day), timeOf(Long.numberOfTrailingZeros(fits)));
+            }
+            day = firstDayWithRun(day + 1, units);
+            allowed = -1L;
+        }
+        return null;
+    }
+
+    // Views of the free slots of a day, in time order
+    public List<TimeSlot> getFreeSlots(LocalDate date, User professorOrCounselor) {
+        List<TimeSlot> slots = new ArrayList<>();
+        int day = dayOffset(date);
+        if (day < 0) return slots;
+        for (long free = fitStarts(day, slotUnits); free != 0; free &= free - 1) {
+            int unit = Long.numberOfTrailingZeros(free);
+            slots.add(new TimeSlot(timeOf(unit), timeOf(unit + slotUnits), professorOrCounselor));
+        }
+        return slots;
+    }
+
+    // Slot starts of the day from which `units` consecutive units are free
+    private long fitStarts(int day, int units) {
+        long free = openUnits & ~busy[slot(day)];
+        // Keep the bits that begin a run of at least `units`, doubling the checked length each step
+        long starts = free;
+        for (int have = 1; have < units && starts != 0; ) {
+            int step = Math.min(have, units - have);
+            starts &= starts >>> step;
+            have += step;
+        }
+        return starts & slotStarts;
+    }
+
+    // Moves the cursor to the next free unit at or after it
+    private void advanceCursor() {
+        while (cursorDay < busy.length) {
+            long free = openUnits & ~busy[slot(cursorDay)] & (-1L << cursorUnit);
+            if (free != 0) {
+                cursorUnit = Long.numberOfTrailingZeros(free);
+                return;
+            }
+            int next = firstDayWithRun(cursorDay + 1, 1);
+            cursorDay = next >= 0 ? next : busy.length;
+            cursorUnit = 0;
+        }
+    }
+
+    // First day at or after fromDay whose longest free run is at least `units`, or -1
+    private int firstDayWithRun(int fromDay, int units) {
+        if (fromDay >= busy.length) return -1;
+        int head = slot(0);
+        int from = slot(fromDay);
+        int found = firstSlotWithRun(from, units);
+        if (from >= head) {
+            // Days after the ring's end continue at slot 0, up to the horizon's first day
+            if (found < 0) found = firstSlotWithRun(0, units);
+            if (found >= head && found < from) found = -1;
+        } else if (found >= head) {
+            found = -1;
+        }
+        return found < 0 ? -1 : (found - head + busy.length) % busy.length;
+    }
+
+    // First ring slot at or after fromSlot whose longest free run is at least `units`, or -1
+    private int firstSlotWithRun(int fromSlot, int units) {
+        int node = leafBase + fromSlot;
+        if (longestRun[node] >= units) return fromSlot;
+        // Climb until a right sibling has a long enough run, then walk down its leftmost such path
+        while (node > 1) {
+            if ((node & 1) == 0 && longestRun[node + 1] >= units) {
+                node++;
+                while (node < leafBase) {
+                    node = longestRun[2 * node] >= units ? 2 * node : 2 * node + 1;
+                }
+                return node - leafBase;
+            }
+            node >>= 1;
+        }
+        return -1;
+    }
+
+    private void updateTree(int day) {
+        int slot = slot(day);
+        int node = leafBase + slot;
+        longestRun[node] = (byte) longestRun(openUnits & ~busy[slot]);
+        for (node >>= 1; node >= 1; node >>= 1) {
+            longestRun[node] = (byte) Math.max(longestRun[2 * node], longestRun[2 * node + 1]);
+        }
+    }
+
+    private void rebuildTree() {
+        Arrays.fill(longestRun, (byte) 0);
+        for (int slot = 0; slot < busy.length; slot++) {
+            longestRun[leafBase + slot] = (byte) longestRun(openUnits & ~busy[slot]);
+        }
+        for (int node = leafBase - 1; node >= 1; node--) {
+            longestRun[node] = (byte) Math.max(longestRun[2 * node], longestRun[2 * node + 1]);
+        }
+    }
+
+    private static int longestRun(long free) {
+        int length = 0;
+        for (; free != 0; free &= free >>> 1) {
+            length++;
+        }
+        return length;
+    }
+
+    // Units a booking takes: its duration rounded up to whole slots of the grid
+    private int unitsFor(int minutes) {
+        int units = Math.max(1, (minutes + UNIT_MINUTES - 1) / UNIT_MINUTES);
+        return (units + slotUnits - 1) / slotUnits * slotUnits;
+    }
+
+    private int dayOffset(LocalDate date) {
+        long offset = date.toEpochDay() - firstEpochDay;
+        return offset >= 0 && offset < busy.length ? (int) offset : -1;
+    }
+
+    // Ring slot of the day at the given offset from the start of the horizon
+    private int slot(int day) {
+        return (int) Math.floorMod(firstEpochDay + day, (long) busy.length);
+    }
+
+    private static long runMask(int unit, int units) {
+        return units == Long.SIZE ? -1L : ((1L << units) - 1) << unit;
+    }
+
+    // Unit index of a time on the grid, or -1 if the time is before DAY_START or off the grid
+    private static int unitOf(LocalTime time) {
+        int seconds = time.toSecondOfDay() - DAY_START.toSecondOfDay();
+        if (seconds < 0 || seconds % (UNIT_MINUTES * 60) != 0) return -1;
+        return seconds / (UNIT_MINUTES * 60);
+    }
+
+    private static LocalTime timeOf(int unit) {
+        return DAY_START.plusMinutes((long) unit * UNIT_MINUTES);
+    }
+}
@@ -1,24 +1,21 @@
 package com.consultation.model;
 
-import java.util.LinkedList;
 import java.util.Queue;
-import java.util.PriorityQueue;
-import java.util.Comparator;
 
 public class QueueManager {
-    private Queue<Appointment> regularQueue;
-    private Queue<Appointment> priorityQueue;
+    private AppointmentQueue regularQueue;
+    private AppointmentTreap priorityTier; // Search tree by appointment time, then arrival
     private User professorOrCounselor;
 
     public QueueManager() {
-        this.regularQueue = new LinkedList<>();
-        this.priorityQueue = new LinkedList<>();
+        this.regularQueue = new AppointmentQueue();
+        this.priorityTier = new AppointmentTreap();
     }
 
     public QueueManager(User professorOrCounselor) {
         this.professorOrCounselor = professorOrCounselor;
-        this.regularQueue = new LinkedList<>();
-        this.priorityQueue = new LinkedList<>();
+        this.regularQueue = new AppointmentQueue();
+        this.priorityTier = new AppointmentTreap();
     }
 
     public void addToRegularQueue(Appointment appointment) {
@@ -26,7 +23,7 @@ public class QueueManager {
     }
 
     public void addToPriorityQueue(Appointment appointment) {
-        priorityQueue.add(appointment);
+        priorityTier.add(appointment);
     }
 
     public void removeFromRegularQueue(Appointment appointment) {
@@ -34,45 +31,74 @@ public class QueueManager {
     }
 
     public void removeFromPriorityQueue(Appointment appointment) {
-        priorityQueue.remove(appointment);
+        priorityTier.remove(appointment);
     }
 
     public void addAppointment(Appointment appointment) {
         if (appointment.isPriority()) {
-            priorityQueue.add(appointment);
+            priorityTier.add(appointment);
         } else {
             regularQueue.add(appointment);
         }
     }
 
     public Appointment getNextAppointment() {
-        if (!priorityQueue.isEmpty()) {
-            return priorityQueue.poll();
+        if (!priorityTier.isEmpty()) {
+            return priorityTier.poll();
         }
         return regularQueue.poll();
     }
 
+    // The appointment getNextAppointment would return, left in the queue
+    public Appointment peekNextAppointment() {
+        if (!priorityTier.isEmpty()) {
+            return priorityTier.peek();
+        }
+        return regularQueue.peek();
+    }
+
     public void removeAppointment(Appointment appointment) {
-        if (appointment.isPriority()) {
-            priorityQueue.remove(appointment);
-        } else {
+        // Both removals are O(1) handle lookups, so don't rely on the priority flag being in sync
+        if (!priorityTier.remove(appointment)) {
             regularQueue.remove(appointment);
         }
     }
 
     public int getQueueSize() {
-        return regularQueue.size() + priorityQueue.size();
+        return regularQueue.size() + priorityTier.size();
     }
 
     public int getEstimatedWaitTime() {
-        int totalMinutes = 0;
-        for (Appointment app : regularQueue) {
-            totalMinutes += app.getEstimatedDuration();
+        // Both tiers keep a running total of queued minutes
+        return regularQueue.getTotalMinutes() + priorityTier.getTotalMinutes();
+    }
+
+    // 1-based place in line (priority tier first), or -1 if the appointment is not queued
+    public int getQueuePosition(Appointment appointment) {
+        int position = priorityTier.positionOf(appointment);
+        if (position > 0) {
+            return position;
         }
-        for (Appointment app : priorityQueue) {
-            totalMinutes += app.getEstimatedDuration();
+        position = regularQueue.positionOf(appointment);
+        return position > 0 ? priorityTier.size() + position : -1;
+    }
+
+    // Minutes queued ahead of the appointment, or -1 if the appointment is not queued
+    public int getWaitTimeAhead(Appointment appointment) {
+        int minutes = priorityTier.minutesAhead(appointment);
+        if (minutes >= 0) {
+            return minutes;
         }
-        return totalMinutes;
+        minutes = regularQueue.minutesAhead(appointment);
+        return minutes >= 0 ? priorityTier.getTotalMinutes() + minutes : -1;
+    }
+
+    public int getRegularQueueSize() {
+        return regularQueue.size();
+    }
+
+    public int getPriorityQueueSize() {
+        return priorityTier.size();
     }
 
     public Queue<Appointment> getRegularQueue() {
@@ -80,11 +106,11 @@ public class QueueManager {
     }
 
     public Queue<Appointment> getPriorityQueue() {
-        return priorityQueue;
+        return priorityTier;
     }
 
     public boolean setPriority(Appointment appointment, boolean priority) {
-        if (regularQueue.contains(appointment) || priorityQueue.contains(appointment)) {
+        if (isQueued(appointment)) {
             removeAppointment(appointment);
             appointment.setPriority(priority);
             addAppointment(appointment);
@@ -93,7 +119,25 @@ public class QueueManager {
         return false;
     }
 
+    // Moves the appointment to the priority tier, which is kept in appointment time order
+    public boolean promote(Appointment appointment) {
+        return setPriority(appointment, true);
+    }
+
+    // Call after an appointment's time changed; the priority tier is ordered by time
+    public void updateAppointmentTime(Appointment appointment) {
+        priorityTier.update(appointment);
+    }
+
+    public boolean isInRegularQueue(Appointment appointment) {
+        return regularQueue.contains(appointment);
+    }
+
+    public boolean isQueued(Appointment appointment) {
+        return regularQueue.contains(appointment) || priorityTier.contains(appointment);
+    }
+
     public boolean isEmpty() {
-        return regularQueue.isEmpty() && priorityQueue.isEmpty();
+        return regularQueue.isEmpty() && priorityTier.isEmpty();
     }
 } 
\ No newline at end of file
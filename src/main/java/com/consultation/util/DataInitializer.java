@@ -11,11 +11,11 @@ public class DataInitializer {
         // Initialize Professors (CS Department)
         User profSantos = controller.registerUser("prof.santos", "pass123", "PROFESSOR", 
             "Prof. Maria Santos", "msantos@tip.edu.ph"); // OS Professor
-        profSantos.addSubject("Operating Systems");
+        controller.addSubject(profSantos, "Operating Systems");
         
         User profCruz = controller.registerUser("prof.cruz", "pass123", "PROFESSOR", 
             "Prof. Juan Cruz", "jcruz@tip.edu.ph"); // Data Structures Professor
-        profCruz.addSubject("Data Structures");
+        controller.addSubject(profCruz, "Data Structures");
 
         // Initialize Counselors
         controller.registerUser("counselor.garcia", "pass123", "COUNSELOR", 
@@ -24,13 +24,13 @@ public class DataInitializer {
         // Initialize Students	
         User student1 = controller.registerUser("student1", "pass123", "STUDENT", 
             "John Doe", "jdoe@tip.edu.ph");
-        student1.addSubject("Operating Systems");
-        student1.addSubject("Data Structures");
+        controller.addSubject(student1, "Operating Systems");
+        controller.addSubject(student1, "Data Structures");
         
         User student2 = controller.registerUser("student2", "pass123", "STUDENT", 
             "Jane Smith", "jsmith@tip.edu.ph");
-        student2.addSubject("Operating Systems");
-        student2.addSubject("Data Structures");
+        controller.addSubject(student2, "Operating Systems");
+        controller.addSubject(student2, "Data Structures");
 
         // Initialize time slots for all professors and counselors
         controller.initializeAllTimeSlots();
@@ -62,7 +62,7 @@ public class DataInitializer {
             controller.login("counselor.garcia", "pass123"),
             "Academic Advising", 45);
 
-        System.out.println("Initialization complete. Total appointments created: " + 
+        Log.info(() -> "Initialization complete. Total appointments created: " +
             controller.getUserAppointments(student1).size());
     }
 } 
\ No newline at end of file
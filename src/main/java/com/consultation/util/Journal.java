@@ -0,0 +1,331 @@
+package com.consultation.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal. Every record is framed as length, CRC32 and payload,
+ * where the payload is a type byte followed by the record's fields.
+ *
+ * Appending only copies the record into a buffer. A background thread writes everything
+ * appended since its last pass with one write and one fsync, so records that arrive while
+ * a sync is running share the next one (group commit). A caller that needs its record on
+ * disk waits for it with awaitDurable, and callers waiting together share one fsync.
+ *
+ * A failed write or sync is final: the file is cut back to the last synced record, the
+ * records not yet written are dropped, waiting syncs report the error and further appends
+ * are refused, so nothing is ever recorded behind a frame that may be torn.
+ *
+ * Replay stops at the first torn or corrupt record and cuts the file there. Compacting
+ * swaps the whole file for a shorter one holding the current state, which bounds replay.
+ */
+public final class Journal implements Closeable {
+    // Applies one replayed record; the stream holds the record's fields
+    public interface Replayer {
+        void apply(byte type, DataInputStream in) throws IOException;
+    }
+
+    private static final int HEADER_BYTES = 8; // Length and CRC32
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel; // Replaced by compact; the writer reads it under the monitor
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(); // Frames not yet written
+    private long appended; // Records handed to append
+    private long durable; // Records written and synced
+    private long durableBytes; // File size up to the last synced record
+    private int sinceCompaction;
+    private int replayed;
+    private boolean closed;
+    private IOException failure; // Write error that stopped the journal; see append and sync
+
+    private Journal(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    // Opens the journal, creating it if needed, and replays its records in order before
+    // starting the commit thread
+    public static Journal open(Path file, Replayer replayer) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Journal journal = new Journal(file, channel);
+        try {
+            journal.replay(replayer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        Thread writer = new Thread(journal::commitLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return journal;
+    }
+
+    // Records found in the file when it was opened
+    public int getReplayedCount() {
+        return replayed;
+    }
+
+    public synchronized int getRecordsSinceCompaction() {
+        return sinceCompaction;
+    }
+
+    // Fields may be String (or null), Integer, Long, Boolean or LocalDateTime. Returns the
+    // record's sequence number; see awaitDurable.
+    public long append(byte type, Object... fields) {
+        return appendAll(Collections.singletonList(encode(type, fields)));
+    }
+
+    // Appends records made with encode as one unit: either all of them are taken or, if the
+    // journal has failed or is closed, none. Returns the sequence number of the last one.
+    public long appendAll(List<byte[]> records) {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (byte[] record : records) {
+            byte[] frame = frame(record);
+            frames.write(frame, 0, frame.length);
+        }
+        byte[] bytes = frames.toByteArray();
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Journal write failed, changes are no longer recorded", failure);
+            }
+            pending.write(bytes, 0, bytes.length);
+            sinceCompaction += records.size();
+            appended += records.size();
+            notifyAll();
+            return appended;
+        }
+    }
+
+    // Blocks until the records up to the given sequence number are on disk. Throws the write
+    // error if the journal failed before they got there.
+    public synchronized void awaitDurable(long seq) throws IOException {
+        while (durable < seq && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while syncing the journal", e);
+            }
+        }
+        if (durable < seq) {
+            throw failure;
+        }
+    }
+
+    // Blocks until every record appended so far is on disk
+    public synchronized void sync() throws IOException {
+        awaitDurable(appended);
+    }
+
+    // Replaces the journal with the given records, which must describe the whole current
+    // state. The caller has to keep the state from changing until this returns. The new
+    // file is written and synced next to the old one and then moved over it, so a crash
+    // leaves one of the two intact.
+    public synchronized void compact(List<byte[]> records) throws IOException {
+        sync();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (byte[] record : records) {
+                byte[] frame = frame(record);
+                buffer.write(frame, 0, frame.length);
+                if (buffer.size() >= 1 << 16) {
+                    writeFully(out, buffer.toByteArray());
+                    buffer.reset();
+                }
+            }
+            writeFully(out, buffer.toByteArray());
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Keep appending to whichever file is in place, the new one or the old one
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            durableBytes = channel.size();
+            channel.position(durableBytes);
+        }
+        sinceCompaction = 0;
+        Log.info(() -> "Journal compacted to " + records.size() + " records");
+    }
+
+    // Encodes a record for compact
+    public static byte[] encode(byte type, Object... fields) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(type);
+            for (Object field : fields) {
+                if (field == null || field instanceof String) {
+                    out.writeBoolean(field != null);
+                    if (field != null) out.writeUTF((String) field);
+                } else if (field instanceof Integer) {
+                    out.writeInt((Integer) field);
+                } else if (field instanceof Long) {
+                    out.writeLong((Long) field);
+                } else if (field instanceof Boolean) {
+                    out.writeBoolean((Boolean) field);
+                } else if (field instanceof LocalDateTime) {
+                    LocalDateTime time = (LocalDateTime) field;
+                    out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+                    out.writeInt(time.getNano());
+                } else {
+                    throw new IllegalArgumentException("Cannot journal " + field.getClass().getName());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Writing to memory does not fail
+        }
+        return bytes.toByteArray();
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    public static LocalDateTime readTime(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+
+    // Writes out what is still pending, syncs it and stops the commit thread
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) return;
+            try {
+                sync();
+            } finally {
+                closed = true;
+                notifyAll();
+                channel.close();
+            }
+        }
+    }
+
+    private void replay(Replayer replayer) throws IOException {
+        long size = channel.size();
+        if (size == 0) return;
+        // Read into the heap rather than mapping, so the file can be cut below on any platform
+        ByteBuffer contents = ByteBuffer.allocate((int) size);
+        while (contents.hasRemaining() && channel.read(contents) >= 0) {
+        }
+        contents.flip();
+        CRC32 crc = new CRC32();
+        long valid = 0;
+        while (contents.remaining() >= HEADER_BYTES) {
+            int length = contents.getInt();
+            int checksum = contents.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || length > contents.remaining()) break;
+            byte[] payload = new byte[length];
+            contents.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) break;
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, length - 1));
+            replayer.apply(payload[0], in);
+            replayed++;
+            valid = contents.position();
+        }
+        if (valid < size) {
+            // The tail was being written when the process stopped
+            long kept = valid;
+            Log.warn(() -> "Journal " + file + ": dropping " + (size - kept) + " bytes after the last whole record");
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+        durableBytes = valid;
+    }
+
+    private void commitLoop() {
+        while (true) {
+            byte[] batch;
+            long upTo;
+            FileChannel target;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) return; // Closed and drained
+                batch = pending.toByteArray();
+                pending.reset();
+                upTo = appended;
+                target = channel;
+            }
+            try {
+                writeFully(target, batch);
+                target.force(false);
+            } catch (IOException e) {
+                fail(target, e);
+                return;
+            } catch (RuntimeException e) {
+                // Would otherwise end the thread and leave every sync waiting
+                fail(target, new IOException(e));
+                return;
+            }
+            synchronized (this) {
+                durable = upTo;
+                durableBytes += batch.length;
+                notifyAll();
+            }
+        }
+    }
+
+    // Stops the journal after a failed write. The batch may be partly on disk, so cut the
+    // file back to the last synced record; replay would stop at a torn frame anyway, but a
+    // whole frame that was never reported durable must not come back either.
+    private synchronized void fail(FileChannel target, IOException error) {
+        Log.error("Journal write failed, no further changes are recorded: " + error.getMessage());
+        failure = error;
+        pending.reset();
+        notifyAll();
+        try {
+            target.truncate(durableBytes);
+            target.force(false);
+        } catch (IOException | RuntimeException e) {
+            Log.error("Cutting the journal back to its last synced record failed: " + e.getMessage());
+        }
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        return frame.array();
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.consultation.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Small leveled logger. Callers only hand over a record when the level is enabled,
+ * and a background thread writes the records to a file, so logging never waits on I/O.
+ *
+ * Configured with the system properties {@code consultation.log.level}
+ * (DEBUG, INFO, WARN, ERROR or OFF; default INFO) and {@code consultation.log.file}
+ * (default consultation.log).
+ */
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final int BUFFER_SIZE = 8192; // Records waiting for the writer thread
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static volatile Level level = parseLevel(System.getProperty("consultation.log.level", "INFO"));
+    private static final AsyncAppender appender = new AsyncAppender(System.getProperty("consultation.log.file", "consultation.log"));
+
+    private Log() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public static boolean isEnabled(Level recordLevel) {
+        return recordLevel.compareTo(level) >= 0 && recordLevel != Level.OFF;
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) appender.append(Level.DEBUG, message.get());
+    }
+
+    public static void info(String message) {
+        if (isEnabled(Level.INFO)) appender.append(Level.INFO, message);
+    }
+
+    public static void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) appender.append(Level.INFO, message.get());
+    }
+
+    public static void warn(String message) {
+        if (isEnabled(Level.WARN)) appender.append(Level.WARN, message);
+    }
+
+    public static void warn(Supplier<String> message) {
+        if (isEnabled(Level.WARN)) appender.append(Level.WARN, message.get());
+    }
+
+    public static void error(String message) {
+        if (isEnabled(Level.ERROR)) appender.append(Level.ERROR, message);
+    }
+
+    // Records dropped because the buffer was full
+    public static long getDroppedCount() {
+        return appender.dropped.get();
+    }
+
+    // Blocks until every record logged so far has been written
+    public static void flush() {
+        appender.flush();
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    private static final class Record {
+        private final long millis;
+        private final Level level;
+        private final String thread;
+        private final String message;
+
+        private Record(Level level, String message) {
+            this.millis = System.currentTimeMillis();
+            this.level = level;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+        }
+    }
+
+    private static final class AsyncAppender implements Runnable {
+        // Fixed-size ring of pending records; when it is full new records are dropped
+        // and counted rather than making the caller wait for the file
+        private final BlockingQueue<Record> ring = new ArrayBlockingQueue<>(BUFFER_SIZE);
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong appended = new AtomicLong();
+        private volatile long written;
+        private final String fileName;
+        private BufferedWriter writer;
+
+        private AsyncAppender(String fileName) {
+            this.fileName = fileName;
+            Thread thread = new Thread(this, "log-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-flush"));
+        }
+
+        private void append(Level level, String message) {
+            if (ring.offer(new Record(level, message))) {
+                appended.incrementAndGet();
+            } else {
+                dropped.incrementAndGet();
+            }
+        }
+
+        private void flush() {
+            long target = appended.get();
+            long deadline = System.currentTimeMillis() + 2000;
+            while (written < target && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Record> batch = new ArrayList<>();
+            while (true) {
+                try {
+                    Record first = ring.poll(500, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    ring.drainTo(batch);
+                    write(batch);
+                    written += batch.size();
+                    batch.clear();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void write(List<Record> batch) {
+            try {
+                if (writer == null) {
+                    writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                for (Record record : batch) {
+                    writer.write(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.millis), ZoneId.systemDefault())
+                        .format(TIMESTAMP_FORMAT));
+                    writer.write(" [" + record.thread + "] " + record.level + " " + record.message);
+                    writer.newLine();
+                }
+                writer.flush();
+            } catch (IOException e) {
+                // Nowhere left to log to; count the records as lost
+                dropped.addAndGet(batch.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.consultation.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Streams a snapshot written by SnapshotWriter back from a channel, refilling a fixed
+ * buffer as it goes. The header is checked on construction; finish checks the CRC32.
+ */
+public final class SnapshotReader {
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private final List<String> strings = new ArrayList<>();
+    private final int version;
+    private int checked; // Buffer position up to which bytes are in the checksum
+
+    public SnapshotReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer.flip(); // Start empty
+        if (getInt() != SnapshotWriter.MAGIC) {
+            throw new IOException("Not a snapshot");
+        }
+        version = getInt();
+        if (version < 1 || version > SnapshotWriter.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+    }
+
+    // Format version the snapshot was written with
+    public int getVersion() {
+        return version;
+    }
+
+    public int getByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public boolean getBoolean() throws IOException {
+        return getByte() != 0;
+    }
+
+    public int getInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    public long getLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    public int getVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = getByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public String getString() throws IOException {
+        int tag = getVarInt();
+        if (tag == SnapshotWriter.NULL_STRING) return null;
+        if (tag == SnapshotWriter.NEW_STRING) {
+            byte[] bytes = new byte[getVarInt()];
+            for (int offset = 0; offset < bytes.length; ) {
+                require(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+        int index = tag - SnapshotWriter.REFERENCE;
+        if (index >= strings.size()) {
+            throw new IOException("String table index " + index + " not defined yet");
+        }
+        return strings.get(index);
+    }
+
+    public LocalDateTime getEpochMinute() throws IOException {
+        return LocalDateTime.ofEpochSecond(getInt() * 60L, 0, ZoneOffset.UTC);
+    }
+
+    public LocalDateTime getTimestamp() throws IOException {
+        long seconds = getLong();
+        return LocalDateTime.ofEpochSecond(seconds, getInt(), ZoneOffset.UTC);
+    }
+
+    // Checks the trailing checksum against everything read
+    public void finish() throws IOException {
+        checksumConsumed();
+        int expected = (int) crc.getValue();
+        if (getInt() != expected) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+    }
+
+    // Makes at least `bytes` bytes readable, reading more from the channel if needed
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        checksumConsumed();
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Snapshot ends early");
+            }
+        }
+        buffer.flip();
+        checked = 0;
+    }
+
+    // Adds the bytes consumed since the last refill to the checksum
+    private void checksumConsumed() {
+        ByteBuffer consumed = buffer.duplicate();
+        consumed.limit(buffer.position()).position(checked);
+        crc.update(consumed);
+        checked = buffer.position();
+    }
+}
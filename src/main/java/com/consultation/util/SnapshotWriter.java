@@ -0,0 +1,135 @@
+package com.consultation.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Streams a binary snapshot to a channel through a fixed buffer. The stream starts with
+ * a magic number and a format version and ends with a CRC32 of everything before it.
+ *
+ * Strings go through a string table built while writing: the first time a string is
+ * written it is defined inline and gets the next index, later writes only store the
+ * index. Usernames and subjects repeat on every appointment, so this keeps them to a
+ * byte or two each. See SnapshotReader for the reading side.
+ */
+public final class SnapshotWriter {
+    public static final int MAGIC = 0x4B464353; // "KFCS"
+    public static final int VERSION = 2;
+
+    // String tags; a tag of REFERENCE or more refers to string table entry tag - REFERENCE
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int REFERENCE = 2;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    public SnapshotWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        putInt(MAGIC);
+        putInt(VERSION);
+    }
+
+    public void putByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    public void putBoolean(boolean value) throws IOException {
+        putByte(value ? 1 : 0);
+    }
+
+    public void putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    public void putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    // Unsigned LEB128: seven bits per byte, so small counts and indexes take one byte
+    public void putVarInt(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void putString(String value) throws IOException {
+        if (value == null) {
+            putVarInt(NULL_STRING);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            putVarInt(REFERENCE + index);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(NEW_STRING);
+        putVarInt(bytes.length);
+        for (int offset = 0; offset < bytes.length; ) {
+            ensure(1);
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    // Minutes since the epoch, for times on the schedule grid
+    public void putEpochMinute(LocalDateTime time) throws IOException {
+        if (time.getSecond() != 0 || time.getNano() != 0) {
+            throw new IllegalArgumentException("Not a whole minute: " + time);
+        }
+        putInt((int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L));
+    }
+
+    // Exact time, for timestamps that are not on the grid
+    public void putTimestamp(LocalDateTime time) throws IOException {
+        putLong(time.toEpochSecond(ZoneOffset.UTC));
+        putInt(time.getNano());
+    }
+
+    // Appends the checksum and writes out everything still buffered
+    public void finish() throws IOException {
+        flush();
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        write();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        write();
+    }
+
+    private void write() throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,236 @@
+package com.consultation.view;
+
+import com.consultation.model.Appointment;
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Table model over immutable snapshots of appointments. A refresh is applied as a diff
+ * keyed by appointment id: rows that are gone are deleted, new rows inserted and changed
+ * rows updated, each with its own event, so the table keeps its selection and scroll
+ * position. Cells hold raw values; the table's renderer asks for the text when it paints.
+ */
+public class AppointmentTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    // Computes a cell from the row's snapshot and its current index
+    public interface Cell {
+        Object get(Row row, int index);
+    }
+
+    public static final class Column {
+        private final String name;
+        private final Cell value;
+        private final Cell text; // Null: the value's string form
+
+        public Column(String name, Cell value) {
+            this(name, value, null);
+        }
+
+        public Column(String name, Cell value, Cell text) {
+            this.name = name;
+            this.value = value;
+            this.text = text;
+        }
+    }
+
+    // What the tables show of one appointment, captured off the EDT. The appointment itself
+    // is only kept to act on the row and is not compared.
+    public static final class Row {
+        final Appointment appointment;
+        final int id;
+        final LocalDateTime time;
+        final String providerName;
+        final String studentName;
+        final String subject;
+        final int duration;
+        final String status;
+        final boolean priority;
+        final int queuePosition; // 0 when not queued
+        final int waitAhead; // Minutes of appointments ahead in the queue
+
+        public Row(Appointment appointment) {
+            this(appointment, 0, 0);
+        }
+
+        public Row(Appointment appointment, int queuePosition, int waitAhead) {
+            this.appointment = appointment;
+            this.id = appointment.getId();
+            this.time = appointment.getAppointmentTime();
+            this.providerName = appointment.getProfessorOrCounselor().getName();
+            this.studentName = appointment.getStudent().getName();
+            this.subject = appointment.getSubject();
+            this.duration = appointment.getEstimatedDuration();
+            this.status = appointment.getStatus();
+            this.priority = appointment.isPriority();
+            this.queuePosition = queuePosition;
+            this.waitAhead = waitAhead;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Row)) return false;
+            Row other = (Row) o;
+            return id == other.id && duration == other.duration && priority == other.priority
+                && queuePosition == other.queuePosition && waitAhead == other.waitAhead
+                && Objects.equals(time, other.time) && Objects.equals(providerName, other.providerName)
+                && Objects.equals(studentName, other.studentName) && Objects.equals(subject, other.subject)
+                && Objects.equals(status, other.status);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, time, status, priority, queuePosition);
+        }
+    }
+
+    private final List<Column> columns;
+    private final List<Row> rows = new ArrayList<>();
+
+    public AppointmentTableModel(Column... columns) {
+        this.columns = Arrays.asList(columns);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column).name;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return columns.get(column).value.get(rows.get(row), row);
+    }
+
+    // The cell as the table shows it, formatted only when asked for
+    public String getTextAt(int row, int column) {
+        Column c = columns.get(column);
+        Object text = (c.text != null ? c.text : c.value).get(rows.get(row), row);
+        return text == null ? "" : text.toString();
+    }
+
+    public Appointment getAppointmentAt(int row) {
+        return row >= 0 && row < rows.size() ? rows.get(row).appointment : null;
+    }
+
+    // The current rows, read-only
+    public List<Row> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    // Row of the appointment with the given id, or -1
+    public int indexOf(int appointmentId) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).id == appointmentId) return i;
+        }
+        return -1;
+    }
+
+    // Replaces the rows with the given ones (ids must be unique), firing events for the
+    // differences only
+    public void setRows(List<Row> next) {
+        // Deletions, bottom up so the indexes still to visit stay valid. Rows that moved
+        // relative to the others are deleted too and inserted again below.
+        boolean[] inPlace = rowsInPlace(next);
+        for (int end = rows.size() - 1; end >= 0; ) {
+            if (inPlace[end]) {
+                end--;
+                continue;
+            }
+            int start = end;
+            while (start > 0 && !inPlace[start - 1]) start--;
+            rows.subList(start, end + 1).clear();
+            fireTableRowsDeleted(start, end);
+            end = start - 1;
+        }
+        // What is left is in the new order, with gaps where rows are inserted
+        int i = 0;
+        while (i < next.size()) {
+            Row row = next.get(i);
+            if (i < rows.size() && rows.get(i).id == row.id) {
+                boolean changed = !rows.get(i).equals(row);
+                rows.set(i, row); // Keep the fresher appointment either way
+                if (changed) fireTableRowsUpdated(i, i);
+                i++;
+                continue;
+            }
+            int start = i;
+            Integer nextKept = start < rows.size() ? rows.get(start).id : null;
+            while (i < next.size() && (nextKept == null || next.get(i).id != nextKept)) i++;
+            rows.addAll(start, next.subList(start, i));
+            fireTableRowsInserted(start, i - 1);
+        }
+    }
+
+    // Replaces the rows with the ids of the given ones, adds those that are new and drops
+    // the removed ids, keeping all rows in the given order. For refreshing only the rows a
+    // change touched; like setRows, fires events for the differences only.
+    public void patchRows(Collection<Row> changed, Set<Integer> removed, Comparator<Row> order) {
+        Map<Integer, Row> byId = new HashMap<>(changed.size() * 2);
+        for (Row row : changed) {
+            byId.put(row.id, row);
+        }
+        List<Row> next = new ArrayList<>(rows.size() + byId.size());
+        for (Row row : rows) {
+            if (!removed.contains(row.id) && !byId.containsKey(row.id)) next.add(row);
+        }
+        next.addAll(byId.values());
+        next.sort(order);
+        setRows(next);
+    }
+
+    // Marks the current rows that can stay where they are: the longest run of them that is
+    // already in the new order (longest increasing subsequence of their old indexes)
+    private boolean[] rowsInPlace(List<Row> next) {
+        Map<Integer, Integer> oldIndex = new HashMap<>(rows.size() * 2);
+        for (int i = 0; i < rows.size(); i++) {
+            oldIndex.put(rows.get(i).id, i);
+        }
+        int[] seq = new int[next.size()];
+        int m = 0;
+        for (Row row : next) {
+            Integer index = oldIndex.get(row.id);
+            if (index != null) seq[m++] = index;
+        }
+        int[] tails = new int[m]; // tails[k]: position in seq ending the best run of length k + 1
+        int[] prev = new int[m];
+        int length = 0;
+        for (int k = 0; k < m; k++) {
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (seq[tails[mid]] < seq[k]) lo = mid + 1;
+                else hi = mid;
+            }
+            prev[k] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = k;
+            if (lo == length) length++;
+        }
+        boolean[] inPlace = new boolean[rows.size()];
+        for (int k = length > 0 ? tails[length - 1] : -1; k >= 0; k = prev[k]) {
+            inPlace[seq[k]] = true;
+        }
+        return inPlace;
+    }
+}
@@ -1,11 +1,13 @@
 package com.consultation.view;
 
 // ----- NECESSARY IMPORTS -----
+import com.consultation.controller.ChangeEvent;
 import com.consultation.controller.ConsultationController; // Added
 import com.consultation.model.User;                       // Added
 import com.consultation.model.Appointment;               // Added
 import com.consultation.model.QueueManager;               // Added
 import com.consultation.model.Notification;             // Added
+import com.consultation.util.Log;
 
 import javax.swing.*;
 import javax.swing.border.Border;
@@ -24,7 +26,19 @@ import java.util.ArrayList;                             // Use java.util.ArrayLi
 import java.util.Calendar;                              // Keep if used later
 import java.util.Comparator;                            // Use java.util.Comparator
 import java.util.Date;                                  // Keep if used later for JSpinner
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;                                  // Use java.util.List (NOT java.awt.List)
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;                       // Added
 
 // ----- END IMPORTS -----
@@ -78,6 +92,9 @@ public class ConsultationGUI extends JFrame {
     private static final Border BORDER_BUTTON_PADDING = new EmptyBorder(8, 18, 8, 18);
     private static final Border BORDER_INPUT_DEFAULT = new CompoundBorder(new LineBorder(COLOR_BORDER, 1), BORDER_COMPONENT_PADDING);
 
+    private static final java.time.format.DateTimeFormatter NOTIFICATION_TIME_FORMAT = java.time.format.DateTimeFormatter.ofPattern("HH:mm");
+    private static final java.time.format.DateTimeFormatter TABLE_TIME_FORMAT = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
 
     // ----- Card names for center panel (Needs to be declared) -----
     private static final String CARD_BOOK_APPOINTMENT = "BookAppointment";
@@ -88,22 +105,47 @@ public class ConsultationGUI extends JFrame {
     // ----- END Card names -----
 
     // ----- Table Models (Needs to be declared) -----
-    private DefaultTableModel myAppointmentsTableModel;
-    private DefaultTableModel queueStatusStaffTableModel;
-    private DefaultTableModel manageAppointmentsTableModel;
+    private AppointmentTableModel myAppointmentsTableModel;
+    private AppointmentTableModel queueStatusStaffTableModel;
+    private AppointmentTableModel manageAppointmentsTableModel;
     // ----- END Table Models -----
 
     // ----- Components needing refresh access (Needs to be declared) -----
     private JLabel queueSizeLabel; // Keep as JLabel if original used label, or JPanel if using enhanced info box
     private JLabel avgWaitTimeLabel; // Keep as JLabel or change to JPanel
     private JLabel completedTodayLabel; // Keep as JLabel or change to JPanel
-    private JList<String> notificationList;
-    private DefaultListModel<String> notificationListModel;
+    private JList<NotificationView> notificationList;
+    private DefaultListModel<NotificationView> notificationListModel; // Newest first
     // ----- END Components -----
 
+    // Controller calls run here rather than on the EDT, one at a time in submission order,
+    // so a refresh can never be overwritten by an older one
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "gui-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int pendingTasks; // Background tasks not finished yet; EDT only
+
+    // Controller changes are collected here and applied once per frame by the refresh timer,
+    // so a burst of changes (a priority cascade, say) costs one update. Only the rows and
+    // labels the changes touched are fetched again, and only in the view on screen; the
+    // other views are refreshed in full when they are shown.
+    private static final int REFRESH_FRAME_MILLIS = 16;
+    private final ChangeEvent.Listener changeListener = this::onControllerChange;
+    private final Set<String> subscriptions = new HashSet<>(); // Usernames changeListener is registered for; EDT only
+    private final Map<Integer, ChangeEvent> pendingChanges = new ConcurrentHashMap<>(); // Appointment id -> latest change
+    private final Set<String> pendingNotifications = ConcurrentHashMap.newKeySet(); // Recipients of new notifications
+    private final AtomicBoolean pendingReload = new AtomicBoolean();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final Timer refreshTimer = new Timer(REFRESH_FRAME_MILLIS, e -> applyPendingChanges());
+    private String visibleCard = ""; // Card shown in the center panel; EDT only
+    private JComboBox<String> manageFilterComboBox;
+
     // --- Constructor ---
     public ConsultationGUI(ConsultationController controller) {
         this.controller = controller;
+        refreshTimer.setRepeats(false);
         initializeUI();
     }
 
@@ -247,6 +289,9 @@ public class ConsultationGUI extends JFrame {
         if (currentUser == null) return;
         setupLeftNavPanel();
         setupCenterContentPanel();
+        Set<String> own = new HashSet<>();
+        own.add(currentUser.getUsername());
+        updateSubscriptions(own);
         refreshAllViews(); // Ensure this method exists
         showDefaultViewForRole(); // Ensure this method exists
     }
@@ -337,6 +382,7 @@ public class ConsultationGUI extends JFrame {
                 break;
         }
         if (!defaultCard.isEmpty()) {
+            visibleCard = defaultCard;
             centerCardLayout.show(centerContentPanel, defaultCard);
         } else {
             System.err.println("Could not determine default view for role: " + currentUser.getRole());
@@ -390,6 +436,7 @@ public class ConsultationGUI extends JFrame {
                  }
             } else {
                  refreshSpecificView(actionCommand); // Ensure this method exists
+                 visibleCard = actionCommand;
                  centerCardLayout.show(centerContentPanel, actionCommand);
             }
         });
@@ -570,32 +617,31 @@ public class ConsultationGUI extends JFrame {
                     throw new Exception("Selected Professor/Counselor object not found.");
                 }
 
-                Appointment appointment = controller.createAppointment(
-                        currentUser, professorOrCounselor, selectedSubject, duration
-                );
-
-                if (appointment != null) {
-                    JOptionPane.showMessageDialog(this,
-                            "Appointment request submitted!\n" +
-                            "You will be assigned the next available slot.\n\n" +
-                            "Assigned Time: " + appointment.getAppointmentTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) + "\n" +
-                            "With: " + appointment.getProfessorOrCounselor().getName() + "\n" +
-                            "Subject: " + appointment.getSubject(),
-                            "Request Submitted", JOptionPane.INFORMATION_MESSAGE);
-
-                    subjectComboBox.setSelectedIndex(0);
-                    durationSpinner.setValue(30);
-                    descriptionArea.setText("");
-                    refreshSpecificView(CARD_MY_APPOINTMENTS); // Use constant
-                } else {
-                    JOptionPane.showMessageDialog(this,
-                            "Failed to create appointment request.\n" +
-                            "Possible reasons:\n" +
-                            "- No available time slots currently.\n" +
-                            "- Subject enrollment/teaching mismatch.\n" + // Simplified msg
-                            "Please check selections or try again later.",
-                            "Request Failed", JOptionPane.ERROR_MESSAGE);
-                }
+                User student = currentUser;
+                runInBackground(() -> controller.createAppointment(student, professorOrCounselor, selectedSubject, duration),
+                        appointment -> {
+                    if (appointment != null) {
+                        JOptionPane.showMessageDialog(this,
+                                "Appointment request submitted!\n" +
+                                "You will be assigned the next available slot.\n\n" +
+                                "Assigned Time: " + appointment.getAppointmentTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) + "\n" +
+                                "With: " + appointment.getProfessorOrCounselor().getName() + "\n" +
+                                "Subject: " + appointment.getSubject(),
+                                "Request Submitted", JOptionPane.INFORMATION_MESSAGE);
+
+                        subjectComboBox.setSelectedIndex(0);
+                        durationSpinner.setValue(30);
+                        descriptionArea.setText("");
+                    } else {
+                        JOptionPane.showMessageDialog(this,
+                                "Failed to create appointment request.\n" +
+                                "Possible reasons:\n" +
+                                "- No available time slots currently.\n" +
+                                "- Subject enrollment/teaching mismatch.\n" + // Simplified msg
+                                "Please check selections or try again later.",
+                                "Request Failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error processing request: " + ex.getMessage(),
                         "Error", JOptionPane.ERROR_MESSAGE);
@@ -617,8 +663,14 @@ public class ConsultationGUI extends JFrame {
         titleLabel.setBorder(new EmptyBorder(0, 0, 25, 0));
         panel.add(titleLabel, BorderLayout.NORTH);
 
-        String[] columnNames = {"Professor/Counselor", "Date & Time", "Subject", "Status"};
-        myAppointmentsTableModel = new DefaultTableModel(columnNames, 0) { @Override public boolean isCellEditable(int row, int column) { return false; } };
+        myAppointmentsTableModel = new AppointmentTableModel(
+                new AppointmentTableModel.Column("Professor/Counselor", (r, i) -> r.providerName),
+                new AppointmentTableModel.Column("Date & Time", (r, i) -> r.time, (r, i) -> r.time.format(TABLE_TIME_FORMAT)),
+                new AppointmentTableModel.Column("Subject", (r, i) -> r.subject),
+                new AppointmentTableModel.Column("Status", (r, i) -> r.status),
+                // Live place in the professor's/counselor's queue and the minutes waiting ahead of it
+                new AppointmentTableModel.Column("Queue", (r, i) -> r.queuePosition,
+                        (r, i) -> r.queuePosition > 0 ? "#" + r.queuePosition + " (~" + r.waitAhead + " min wait)" : "-"));
         JTable appointmentsTable = createStyledTable(myAppointmentsTableModel);
         JScrollPane scrollPane = new JScrollPane(appointmentsTable);
         scrollPane.setBorder(new LineBorder(COLOR_BORDER));
@@ -640,11 +692,7 @@ public class ConsultationGUI extends JFrame {
         cancelButton.addActionListener(e -> {
              int selectedRow = appointmentsTable.getSelectedRow();
              if (selectedRow >= 0) {
-                 List<Appointment> userAppointments = controller.getUserAppointments(currentUser);
-                 // CRITICAL: Filter out non-cancelable statuses IF NECESSARY before sorting for display mapping
-                 // This example assumes the table ONLY shows cancelable items or cancellation checks status later
-                 userAppointments.sort(Comparator.comparing(Appointment::getAppointmentTime));
-                 Appointment appointmentToCancel = (selectedRow < userAppointments.size()) ? userAppointments.get(selectedRow) : null;
+                 Appointment appointmentToCancel = myAppointmentsTableModel.getAppointmentAt(selectedRow);
 
                  if (appointmentToCancel != null) {
                      // Add status check before confirmation
@@ -657,12 +705,13 @@ public class ConsultationGUI extends JFrame {
                              "Cancel appointment with " + appointmentToCancel.getProfessorOrCounselor().getName() + " at " + appointmentToCancel.getAppointmentTime().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm")) + "?",
                              "Confirm Cancellation", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
                      if (confirm == JOptionPane.YES_OPTION) {
-                         if (controller.cancelAppointment(appointmentToCancel)) {
-                             refreshMyAppointmentsTable(myAppointmentsTableModel); // Use variable
-                             JOptionPane.showMessageDialog(this, "Appointment cancelled.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                         } else {
-                             JOptionPane.showMessageDialog(this, "Failed to cancel appointment.", "Error", JOptionPane.ERROR_MESSAGE);
-                         }
+                         runInBackground(() -> controller.cancelAppointment(appointmentToCancel), cancelled -> {
+                             if (cancelled) {
+                                 JOptionPane.showMessageDialog(this, "Appointment cancelled.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                             } else {
+                                 JOptionPane.showMessageDialog(this, "Failed to cancel appointment.", "Error", JOptionPane.ERROR_MESSAGE);
+                             }
+                         });
                      }
                  } else {
                      JOptionPane.showMessageDialog(this, "Could not map selection to appointment data.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -686,8 +735,14 @@ public class ConsultationGUI extends JFrame {
         titleLabel.setBorder(new EmptyBorder(0, 0, 25, 0));
         panel.add(titleLabel, BorderLayout.NORTH);
 
-        String[] columnNames = {"Pos", "Student", "Time", "Duration", "Subject", "Priority", "Status"};
-        queueStatusStaffTableModel = new DefaultTableModel(columnNames, 0) { @Override public boolean isCellEditable(int row, int column) { return false; } };
+        queueStatusStaffTableModel = new AppointmentTableModel(
+                new AppointmentTableModel.Column("Pos", (r, i) -> i + 1),
+                new AppointmentTableModel.Column("Student", (r, i) -> r.studentName),
+                new AppointmentTableModel.Column("Time", (r, i) -> r.time, (r, i) -> r.time.format(TABLE_TIME_FORMAT)),
+                new AppointmentTableModel.Column("Duration", (r, i) -> r.duration, (r, i) -> r.duration + " min"),
+                new AppointmentTableModel.Column("Subject", (r, i) -> r.subject),
+                new AppointmentTableModel.Column("Priority", (r, i) -> r.priority, (r, i) -> r.priority ? "Yes" : "No"),
+                new AppointmentTableModel.Column("Status", (r, i) -> r.status));
         JTable queueTable = createStyledTable(queueStatusStaffTableModel); // Use variable
         TableColumnModel columnModel = queueTable.getColumnModel();
         columnModel.getColumn(0).setPreferredWidth(40); columnModel.getColumn(0).setMaxWidth(50);
@@ -739,15 +794,16 @@ public class ConsultationGUI extends JFrame {
         });
 
         startNextButton.addActionListener(e -> {
-            Appointment nextApp = controller.getNextAppointment(currentUser.getUsername());
-            if (nextApp != null) {
-                 refreshQueueStatusStaffTable(queueStatusStaffTableModel); // Use variable
-                 refreshQueueInfoLabels(); // Ensure this method exists
-                 selectAppointmentInTable(queueTable, nextApp); // Ensure this method exists
-                 JOptionPane.showMessageDialog(this, "Started appointment with " + nextApp.getStudent().getName(), "Appointment Started", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                 JOptionPane.showMessageDialog(this, "No pending appointments in the queue.", "Queue Empty", JOptionPane.INFORMATION_MESSAGE);
-            }
+            String username = currentUser.getUsername();
+            runInBackground(() -> controller.getNextAppointment(username), nextApp -> {
+                if (nextApp != null) {
+                     // Select the started appointment once the table shows it
+                     refreshQueueStatusStaffTable(queueStatusStaffTableModel, () -> selectAppointmentInTable(queueTable, nextApp));
+                     JOptionPane.showMessageDialog(this, "Started appointment with " + nextApp.getStudent().getName(), "Appointment Started", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                     JOptionPane.showMessageDialog(this, "No pending appointments in the queue.", "Queue Empty", JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
         });
 
         completeButton.addActionListener(e -> {
@@ -755,13 +811,13 @@ public class ConsultationGUI extends JFrame {
             if (selectedRow >= 0) {
                 Appointment selectedAppointment = findAppointmentFromQueueTable(queueTable, selectedRow); // Ensure this method exists
                 if (selectedAppointment != null && selectedAppointment.getStatus().equals("IN_PROGRESS")) {
-                    if (controller.updateAppointmentStatus(selectedAppointment, "COMPLETED")) {
-                        refreshQueueStatusStaffTable(queueStatusStaffTableModel); // Use variable
-                        refreshQueueInfoLabels(); // Ensure this method exists
-                        JOptionPane.showMessageDialog(this, "Appointment completed.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                         JOptionPane.showMessageDialog(this, "Failed to mark appointment as completed.", "Error", JOptionPane.ERROR_MESSAGE);
-                    }
+                    runInBackground(() -> controller.updateAppointmentStatus(selectedAppointment, "COMPLETED"), completed -> {
+                        if (completed) {
+                            JOptionPane.showMessageDialog(this, "Appointment completed.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                        } else {
+                             JOptionPane.showMessageDialog(this, "Failed to mark appointment as completed.", "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    });
                 } else if (selectedAppointment == null) {
                     JOptionPane.showMessageDialog(this, "Could not map selection to appointment data.", "Error", JOptionPane.ERROR_MESSAGE);
                 } else {
@@ -785,8 +841,13 @@ public class ConsultationGUI extends JFrame {
         titleLabel.setBorder(new EmptyBorder(0, 0, 25, 0));
         panel.add(titleLabel, BorderLayout.NORTH);
 
-        String[] columnNames = {"Time", "Student", "Subject", "Duration", "Status", "Priority"};
-        manageAppointmentsTableModel = new DefaultTableModel(columnNames, 0) { @Override public boolean isCellEditable(int row, int column) { return false; } };
+        manageAppointmentsTableModel = new AppointmentTableModel(
+                new AppointmentTableModel.Column("Time", (r, i) -> r.time, (r, i) -> r.time.format(TABLE_TIME_FORMAT)),
+                new AppointmentTableModel.Column("Student", (r, i) -> r.studentName),
+                new AppointmentTableModel.Column("Subject", (r, i) -> r.subject),
+                new AppointmentTableModel.Column("Duration", (r, i) -> r.duration, (r, i) -> r.duration + " min"),
+                new AppointmentTableModel.Column("Status", (r, i) -> r.status),
+                new AppointmentTableModel.Column("Priority", (r, i) -> r.priority, (r, i) -> r.priority ? "Yes" : "No"));
         JTable appointmentsTable = createStyledTable(manageAppointmentsTableModel); // Use variable
         TableColumnModel columnModel = appointmentsTable.getColumnModel();
         columnModel.getColumn(0).setPreferredWidth(130); columnModel.getColumn(3).setPreferredWidth(70);
@@ -804,6 +865,7 @@ public class ConsultationGUI extends JFrame {
         filterPanel.setBackground(COLOR_WHITE);
         filterPanel.add(createStyledLabel("Filter by Status:"));
         JComboBox<String> filterComboBox = createStyledComboBox();
+        manageFilterComboBox = filterComboBox;
         filterComboBox.addItem("All"); filterComboBox.addItem("Pending"); filterComboBox.addItem("In Progress");
         filterComboBox.addItem("Completed"); filterComboBox.addItem("Cancelled");
         filterComboBox.addActionListener(e -> refreshManageAppointmentsTable(manageAppointmentsTableModel, (String) filterComboBox.getSelectedItem())); // Use variable
@@ -841,14 +903,13 @@ public class ConsultationGUI extends JFrame {
                     String confirmMessage = newPriorityState ? "Set high priority? (May reschedule others)" : "Remove high priority?";
                     int confirm = JOptionPane.showConfirmDialog(this, confirmMessage, "Confirm Priority", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
                     if (confirm == JOptionPane.YES_OPTION) {
-                        boolean success = controller.setPriority(selectedAppointment, newPriorityState);
-                        if (success) {
-                            JOptionPane.showMessageDialog(this, "Priority updated.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                            refreshManageAppointmentsTable(manageAppointmentsTableModel, (String) filterComboBox.getSelectedItem()); // Use variable
-                            refreshSpecificView(CARD_QUEUE_STATUS_STAFF); // Use constant & ensure method exists
-                        } else {
-                            JOptionPane.showMessageDialog(this, "Failed to update priority.", "Error", JOptionPane.ERROR_MESSAGE);
-                        }
+                        runInBackground(() -> controller.setPriority(selectedAppointment, newPriorityState), success -> {
+                            if (success) {
+                                JOptionPane.showMessageDialog(this, "Priority updated.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                            } else {
+                                JOptionPane.showMessageDialog(this, "Failed to update priority.", "Error", JOptionPane.ERROR_MESSAGE);
+                            }
+                        });
                     }
                 } else { JOptionPane.showMessageDialog(this, "Could not find appointment data.", "Error", JOptionPane.ERROR_MESSAGE); }
             } else { JOptionPane.showMessageDialog(this, "Select appointment to change priority.", "No Selection", JOptionPane.WARNING_MESSAGE); }
@@ -865,11 +926,11 @@ public class ConsultationGUI extends JFrame {
                      }
                     int confirm = JOptionPane.showConfirmDialog(this, "Delete appointment for " + appointmentToDelete.getStudent().getName() + "?", "Confirm Deletion", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
                     if (confirm == JOptionPane.YES_OPTION) {
-                        if (controller.cancelAppointment(appointmentToDelete)) {
-                            refreshManageAppointmentsTable(manageAppointmentsTableModel, (String) filterComboBox.getSelectedItem()); // Use variable
-                             refreshSpecificView(CARD_QUEUE_STATUS_STAFF); // Use constant & ensure method exists
-                            JOptionPane.showMessageDialog(this, "Appointment deleted.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                        } else { JOptionPane.showMessageDialog(this, "Failed to delete.", "Error", JOptionPane.ERROR_MESSAGE); }
+                        runInBackground(() -> controller.cancelAppointment(appointmentToDelete), deleted -> {
+                            if (deleted) {
+                                JOptionPane.showMessageDialog(this, "Appointment deleted.", "Success", JOptionPane.INFORMATION_MESSAGE);
+                            } else { JOptionPane.showMessageDialog(this, "Failed to delete.", "Error", JOptionPane.ERROR_MESSAGE); }
+                        });
                     }
                 } else { JOptionPane.showMessageDialog(this, "Could not find appointment data.", "Error", JOptionPane.ERROR_MESSAGE); }
             } else { JOptionPane.showMessageDialog(this, "Select appointment to delete.", "No Selection", JOptionPane.WARNING_MESSAGE); }
@@ -881,8 +942,7 @@ public class ConsultationGUI extends JFrame {
     // Helper to find Appointment from Manage table (ensure this exists)
      private Appointment findAppointmentFromManageTable(JTable table, int selectedRow, String statusFilter) {
          if (selectedRow < 0 || currentUser == null) return null;
-         List<Appointment> appointments = controller.getFilteredAppointments(currentUser, statusFilter);
-         return selectedRow < appointments.size() ? appointments.get(selectedRow) : null;
+         return manageAppointmentsTableModel.getAppointmentAt(selectedRow);
     }
 
     private void showEditAppointmentDialog(Appointment appointment) {
@@ -918,13 +978,14 @@ public class ConsultationGUI extends JFrame {
                 public void mouseClicked(MouseEvent e) {
                     int index = notificationList.locationToIndex(e.getPoint());
                     if (index >= 0) {
-                        List<Notification> notifications = controller.getUserNotifications(currentUser.getUsername());
-                        if (index < notifications.size()) {
-                            Notification notification = notifications.get(index);
-                            if (!notification.isRead()) {
-                                notification.markAsRead();
-                                refreshNotificationsList(notificationListModel);
-                            }
+                        NotificationView view = notificationListModel.getElementAt(index);
+                        if (!view.read) {
+                            String username = currentUser.getUsername();
+                            runInBackground(() -> controller.markRead(username, view.seq), marked -> {
+                                // Only this row changes, if the list still shows it
+                                int row = notificationListModel.indexOf(view);
+                                if (marked && row >= 0) notificationListModel.set(row, view.markedRead());
+                            });
                         }
                     }
                 }
@@ -946,9 +1007,11 @@ public class ConsultationGUI extends JFrame {
         addHoverEffect(refreshButton, COLOR_SECONDARY, COLOR_SECONDARY.darker());
 
         markAllReadButton.addActionListener(e -> {
-            List<Notification> notifications = controller.getUserNotifications(currentUser.getUsername());
-            notifications.forEach(Notification::markAsRead);
-            refreshNotificationsList(notificationListModel);
+            String username = currentUser.getUsername();
+            runInBackground(() -> {
+                controller.markAllRead(username);
+                return null;
+            }, done -> refreshNotificationsList(notificationListModel));
         });
 
         refreshButton.addActionListener(e -> refreshNotificationsList(notificationListModel));
@@ -1018,6 +1081,37 @@ public class ConsultationGUI extends JFrame {
         return panel;
     }
 
+    // What the notification list shows of one notification, captured when the list is
+    // refreshed so painting never goes back to the controller
+    static final class NotificationView {
+        final long seq;
+        final String message;
+        final LocalDateTime timestamp;
+        final boolean read;
+        private final String text;
+
+        NotificationView(Notification notification, boolean read) {
+            this(notification.getSeq(), notification.getMessage(), notification.getTimestamp(), read);
+        }
+
+        private NotificationView(long seq, String message, LocalDateTime timestamp, boolean read) {
+            this.seq = seq;
+            this.message = message;
+            this.timestamp = timestamp;
+            this.read = read;
+            this.text = timestamp.format(NOTIFICATION_TIME_FORMAT) + ": " + message;
+        }
+
+        NotificationView markedRead() {
+            return read ? this : new NotificationView(seq, message, timestamp, true);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
     // --- Custom List Cell Renderer ---
     class NotificationListRenderer extends DefaultListCellRenderer {
         private final Border cellBorder = new EmptyBorder(5, 8, 5, 8);
@@ -1033,14 +1127,8 @@ public class ConsultationGUI extends JFrame {
             label.setOpaque(true);
             label.setFont(FONT_MAIN);
             label.setToolTipText(value.toString());
-
-            // Get the actual notification to check read status
-            List<Notification> notifications = controller.getUserNotifications(currentUser.getUsername());
-            if (index < notifications.size()) {
-                Notification notification = notifications.get(index);
-                if (!notification.isRead()) {
-                    label.setFont(FONT_BOLD); // Make unread notifications bold
-                }
+            if (value instanceof NotificationView && !((NotificationView) value).read) {
+                label.setFont(FONT_BOLD); // Make unread notifications bold
             }
 
             if (!isSelected) {
@@ -1144,46 +1232,13 @@ public class ConsultationGUI extends JFrame {
                  refreshQueueInfoLabels(); // Ensure method exists
                 break;
             case CARD_MANAGE_APPOINTMENTS: // Use constant
-                 String currentFilter = "All";
-                 Component managePanelComp = findPanelInCenter(CARD_MANAGE_APPOINTMENTS); // Use constant & ensure method exists
-                 if (managePanelComp instanceof Container) {
-                     Container managePanelContainer = (Container) managePanelComp;
-                     JComboBox<String> filterCombo = findComboBox(managePanelContainer); // Ensure method exists
-                     if(filterCombo != null) {
-                         currentFilter = (String) filterCombo.getSelectedItem();
-                     }
-                 } else {
-                      System.err.println("Warning: Manage Appointments panel is not a Container!");
-                 }
-                 if (manageAppointmentsTableModel != null) refreshManageAppointmentsTable(manageAppointmentsTableModel, currentFilter); // Use variable
+                 if (manageAppointmentsTableModel != null) refreshManageAppointmentsTable(manageAppointmentsTableModel, currentManageFilter()); // Use variable
                 break;
         }
     }
 
-    // Helper to find a panel (ensure this exists)
-    private Component findPanelInCenter(String cardName) {
-         // This lookup is tricky with CardLayout by name.
-         // A better approach might be to keep references to the panels if needed.
-         // Returning null for now, assuming filter combo search works.
-         return null;
-    }
-
-    // Helper to find combo box (ensure this exists)
-    private JComboBox<String> findComboBox(Container container) {
-        // ... (Keep implementation)
-        for (Component comp : container.getComponents()) {
-            if (comp instanceof JComboBox) {
-                 try {
-                    @SuppressWarnings("unchecked")
-                    JComboBox<String> comboBox = (JComboBox<String>) comp;
-                    return comboBox;
-                } catch (ClassCastException e) { /* Ignore */ }
-            } else if (comp instanceof Container) {
-                JComboBox<String> found = findComboBox((Container) comp);
-                if (found != null) return found;
-            }
-        }
-        return null;
+    private String currentManageFilter() {
+        return manageFilterComboBox != null ? (String) manageFilterComboBox.getSelectedItem() : "All";
     }
 
     private void refreshAllViews() {
@@ -1194,96 +1249,126 @@ public class ConsultationGUI extends JFrame {
         if (notificationListModel != null) refreshNotificationsList(notificationListModel);
         if (queueStatusStaffTableModel != null) refreshQueueStatusStaffTable(queueStatusStaffTableModel);
 
-        String currentFilter = "All";
-         Component managePanelComp = findPanelInCenter(CARD_MANAGE_APPOINTMENTS); // Use constant
-         if (managePanelComp instanceof Container) {
-             Container managePanelContainer = (Container) managePanelComp;
-             JComboBox<String> filterCombo = findComboBox(managePanelContainer);
-             if(filterCombo != null) {
-                 currentFilter = (String) filterCombo.getSelectedItem();
-             }
-         } else {
-              System.err.println("Warning: Manage Appointments panel is not a Container during full refresh!");
-         }
-        if (manageAppointmentsTableModel != null) refreshManageAppointmentsTable(manageAppointmentsTableModel, currentFilter);
+        if (manageAppointmentsTableModel != null) refreshManageAppointmentsTable(manageAppointmentsTableModel, currentManageFilter());
 
         refreshQueueInfoLabels();
     }
 
-    private void refreshMyAppointmentsTable(DefaultTableModel model) {
+    // The refresh methods query the controller in the background and fill the view on the EDT
+
+    private void refreshMyAppointmentsTable(AppointmentTableModel model) {
         // ... (Keep implementation, use correct List/Comparator/Appointment)
          if (model == null || currentUser == null) return;
-        model.setRowCount(0);
-        List<Appointment> appointments = controller.getUserAppointments(currentUser); // java.util.List
-        appointments.sort(Comparator.comparing(Appointment::getAppointmentTime)); // java.util.Comparator
-        for (Appointment app : appointments) { // Correct class name
-            String dateTimeStr = app.getAppointmentTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-            model.addRow(new Object[]{
-                    app.getProfessorOrCounselor().getName(), dateTimeStr, app.getSubject(), app.getStatus()
-            });
+        User user = currentUser;
+        runInBackground(() -> {
+            List<Appointment> appointments = controller.getUserAppointments(user); // java.util.List
+            appointments.sort(Comparator.comparing(Appointment::getAppointmentTime)); // java.util.Comparator
+            List<AppointmentTableModel.Row> rows = new ArrayList<>(appointments.size());
+            for (Appointment app : appointments) { // Correct class name
+                int position = controller.getQueuePosition(app);
+                rows.add(new AppointmentTableModel.Row(app, position, position > 0 ? controller.getWaitTimeAhead(app) : 0));
+            }
+            return rows;
+        }, rows -> {
+            model.setRows(rows);
+            updateSubscriptions(followedUsernames(user, rows));
+        });
+    }
+
+    // Queue positions move with the other students' appointments, so a student follows the
+    // queues it is waiting in
+    private static Set<String> followedUsernames(User user, List<AppointmentTableModel.Row> rows) {
+        Set<String> follow = new HashSet<>();
+        follow.add(user.getUsername());
+        for (AppointmentTableModel.Row row : rows) {
+            if (row.queuePosition > 0) follow.add(row.appointment.getProfessorOrCounselor().getUsername());
         }
+        return follow;
     }
 
-    private void refreshNotificationsList(DefaultListModel<String> listModel) {
-        // ... (Keep implementation, use correct Notification/Comparator)
+    private void refreshNotificationsList(DefaultListModel<NotificationView> listModel) {
         if (listModel == null || currentUser == null) return;
-        listModel.clear();
-        List<Notification> notifications = controller.getUserNotifications(currentUser.getUsername()); // java.util.List
-         notifications.sort(Comparator.comparing(Notification::getTimestamp).reversed()); // java.util.Comparator
-        for (Notification n : notifications) { // Correct class name
-            listModel.addElement(n.getTimestamp().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm")) + ": " + n.getMessage());
-        }
+        String username = currentUser.getUsername();
+        runInBackground(() -> {
+            List<Notification> notifications = controller.getUserNotifications(username); // Oldest first
+            List<NotificationView> views = new ArrayList<>(notifications.size());
+            for (int i = notifications.size() - 1; i >= 0; i--) {
+                Notification n = notifications.get(i);
+                views.add(new NotificationView(n, controller.isNotificationRead(username, n.getSeq())));
+            }
+            return views;
+        }, views -> {
+            listModel.clear();
+            for (NotificationView view : views) {
+                listModel.addElement(view);
+            }
+        });
     }
 
-    private void refreshQueueStatusStaffTable(DefaultTableModel model) {
+    private void refreshQueueStatusStaffTable(AppointmentTableModel model) {
+        refreshQueueStatusStaffTable(model, null);
+    }
+
+    // afterwards, if given, runs on the EDT once the table shows the new rows
+    private void refreshQueueStatusStaffTable(AppointmentTableModel model, Runnable afterwards) {
         // ... (Keep implementation, use correct QueueManager/List/Comparator/Appointment/Collectors)
          if (model == null || currentUser == null) return;
-        model.setRowCount(0);
-        QueueManager queue = controller.getQueueManager(currentUser.getUsername());
-        if (queue != null) {
-            List<Appointment> displayQueue = new ArrayList<>(); // java.util.List/ArrayList
-            List<Appointment> priority = new ArrayList<>(queue.getPriorityQueue()); // java.util.List/ArrayList
-            List<Appointment> regular = new ArrayList<>(queue.getRegularQueue()); // java.util.List/ArrayList
-            priority.sort(Comparator.comparing(Appointment::getAppointmentTime)); // java.util.Comparator
-            regular.sort(Comparator.comparing(Appointment::getAppointmentTime)); // java.util.Comparator
-            displayQueue.addAll(priority);
-            displayQueue.addAll(regular);
-
-            List<Appointment> filteredDisplay = displayQueue.stream()
-                    .filter(a -> a.getStatus().equals("PENDING") || a.getStatus().equals("IN_PROGRESS"))
-                    .collect(Collectors.toList()); // java.util.stream.Collectors
-
-            int position = 1;
-            for (Appointment app : filteredDisplay) { // Correct class name
-                String dateTimeStr = app.getAppointmentTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-                model.addRow(new Object[]{
-                        position++, app.getStudent().getName(), dateTimeStr, app.getEstimatedDuration() + " min",
-                        app.getSubject(), app.isPriority() ? "Yes" : "No", app.getStatus() // Removed Actions column data
-                });
+        String username = currentUser.getUsername();
+        runInBackground(() -> {
+            List<AppointmentTableModel.Row> rows = new ArrayList<>();
+            QueueManager queue = controller.getQueueManager(username);
+            if (queue != null) {
+                List<Appointment> displayQueue = new ArrayList<>(); // java.util.List/ArrayList
+                // Copy both tiers in one go; the queue may be changed by other threads
+                List<List<Appointment>> tiers = controller.getQueueTiers(username);
+                List<Appointment> priority = tiers.get(0); // java.util.List/ArrayList
+                List<Appointment> regular = tiers.get(1); // java.util.List/ArrayList
+                priority.sort(Comparator.comparing(Appointment::getAppointmentTime)); // java.util.Comparator
+                regular.sort(Comparator.comparing(Appointment::getAppointmentTime)); // java.util.Comparator
+                displayQueue.addAll(priority);
+                displayQueue.addAll(regular);
+
+                List<Appointment> filteredDisplay = displayQueue.stream()
+                        .filter(a -> a.getStatus().equals("PENDING") || a.getStatus().equals("IN_PROGRESS"))
+                        .collect(Collectors.toList()); // java.util.stream.Collectors
+
+                for (Appointment app : filteredDisplay) { // Correct class name
+                    rows.add(new AppointmentTableModel.Row(app)); // Pos is the row number
+                }
             }
-        }
+            return rows;
+        }, rows -> {
+            model.setRows(rows);
+            if (afterwards != null) afterwards.run();
+        });
     }
 
-    private void refreshManageAppointmentsTable(DefaultTableModel model, String statusFilter) {
+    private void refreshManageAppointmentsTable(AppointmentTableModel model, String statusFilter) {
         // ... (Keep implementation, use correct List/Comparator/Appointment/Collectors)
         if (model == null || currentUser == null) return;
-        model.setRowCount(0);
-        List<Appointment> appointments = controller.getFilteredAppointments(currentUser, statusFilter);
-        for (Appointment app : appointments) { // Correct class name
-             String dateTimeStr = app.getAppointmentTime().format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-             model.addRow(new Object[]{
-                     dateTimeStr, app.getStudent().getName(), app.getSubject(), app.getEstimatedDuration() + " min",
-                     app.getStatus(), app.isPriority() ? "Yes" : "No" // Removed Actions column data
-             });
-        }
+        User user = currentUser;
+        runInBackground(() -> {
+            List<Appointment> appointments = controller.getFilteredAppointments(user, statusFilter);
+            List<AppointmentTableModel.Row> rows = new ArrayList<>(appointments.size());
+            for (Appointment app : appointments) { // Correct class name
+                 rows.add(new AppointmentTableModel.Row(app));
+            }
+            return rows;
+        }, model::setRows);
     }
 
     // Default refresh overload (ensure this exists)
-    private void refreshManageAppointmentsTable(DefaultTableModel model) { refreshManageAppointmentsTable(model, "All"); }
+    private void refreshManageAppointmentsTable(AppointmentTableModel model) { refreshManageAppointmentsTable(model, "All"); }
 
     // --- Refresh Queue Info Labels ---
     // (Keep the version using updateInfoBoxText or adjust if using JLabels directly)
     private void refreshQueueInfoLabels() {
+        refreshQueueInfoLabels(true);
+    }
+
+    // Without countCompleted the completed count is left as shown; counting it scans all of
+    // the provider's appointments
+    private void refreshQueueInfoLabels(boolean countCompleted) {
         if (currentUser == null || (!currentUser.getRole().equals("PROFESSOR") && !currentUser.getRole().equals("COUNSELOR"))) {
             // Check if the components are JPanels (using the enhanced version)
              if (queueSizeLabel != null && queueSizeLabel.getParent() instanceof JPanel) updateInfoBoxText((JPanel)queueSizeLabel.getParent(), "Queue: N/A");
@@ -1298,19 +1383,32 @@ public class ConsultationGUI extends JFrame {
         }
 
         // Update info boxes (JPanel version)
+        User user = currentUser;
+        runInBackground(() -> {
+            String completed = null;
+            if (countCompleted) {
+                LocalDate today = LocalDate.now();
+                long completedCount = controller.getUserAppointments(user).stream()
+                        .filter(a -> a.getStatus().equals("COMPLETED") && a.getAppointmentTime().toLocalDate().equals(today))
+                        .count();
+                completed = "Completed: " + completedCount;
+            }
+            return new String[]{
+                    "Queue: " + controller.getQueueSize(user.getUsername()),
+                    "Avg Wait: " + controller.getEstimatedWaitTime(user.getUsername()) + " min",
+                    completed
+            };
+        }, texts -> {
          if (queueSizeLabel != null && queueSizeLabel.getParent() instanceof JPanel) {
-              updateInfoBoxText((JPanel)queueSizeLabel.getParent(), "Queue: " + controller.getQueueSize(currentUser.getUsername()));
+              updateInfoBoxText((JPanel)queueSizeLabel.getParent(), texts[0]);
          }
          if (avgWaitTimeLabel != null && avgWaitTimeLabel.getParent() instanceof JPanel) {
-              updateInfoBoxText((JPanel)avgWaitTimeLabel.getParent(), "Avg Wait: " + controller.getEstimatedWaitTime(currentUser.getUsername()) + " min");
+              updateInfoBoxText((JPanel)avgWaitTimeLabel.getParent(), texts[1]);
          }
-         if (completedTodayLabel != null && completedTodayLabel.getParent() instanceof JPanel) {
-              LocalDate today = LocalDate.now();
-              long completedCount = controller.getUserAppointments(currentUser).stream()
-                     .filter(a -> a.getStatus().equals("COMPLETED") && a.getAppointmentTime().toLocalDate().equals(today))
-                     .count();
-             updateInfoBoxText((JPanel)completedTodayLabel.getParent(), "Completed: " + completedCount);
+         if (texts[2] != null && completedTodayLabel != null && completedTodayLabel.getParent() instanceof JPanel) {
+             updateInfoBoxText((JPanel)completedTodayLabel.getParent(), texts[2]);
           }
+        });
 
         // OR if using simple JLabels directly:
         // if (queueSizeLabel != null) queueSizeLabel.setText("Queue: " + controller.getQueueSize(currentUser.getUsername()));
@@ -1321,7 +1419,9 @@ public class ConsultationGUI extends JFrame {
 
     // --- View Switching (Ensure these methods exist) ---
     private void showLoginPanel() {
+        updateSubscriptions(new HashSet<>());
         currentUser = null;
+        visibleCard = "";
         mainCardLayout.show(mainCardPanel, "LOGIN");
     }
 
@@ -1439,7 +1539,7 @@ public class ConsultationGUI extends JFrame {
         }
     }
 
-    private JTable createStyledTable(DefaultTableModel model) {
+    private JTable createStyledTable(AppointmentTableModel model) {
         // ... (Keep implementation from previous enhancement)
          JTable table = new JTable(model);
         table.setFont(FONT_MAIN);
@@ -1468,6 +1568,8 @@ public class ConsultationGUI extends JFrame {
                 Component cellComponent = super.getTableCellRendererComponent(tbl, val, isSelected, hasFocus, row, column);
                 if (cellComponent instanceof JLabel) {
                      JLabel label = (JLabel) cellComponent;
+                     // Cells hold raw values; format only the ones being painted
+                     label.setText(model.getTextAt(tbl.convertRowIndexToModel(row), tbl.convertColumnIndexToModel(column)));
                      label.setBorder(cellPadding);
                      label.setOpaque(true);
                      label.setHorizontalAlignment(SwingConstants.LEFT);
@@ -1492,15 +1594,14 @@ public class ConsultationGUI extends JFrame {
 
     /**
      * Finds the Appointment object corresponding to a specific row in the Queue Status table.
-     * This is necessary because the table view might be sorted or filtered differently
-     * than the raw queue data. It reconstructs the displayed order.
+     * The table model keeps the appointment behind each row as of the last refresh.
      *
      * @param table The JTable displaying the queue status.
      * @param selectedRow The visual index of the selected row in the table.
      * @return The corresponding Appointment object, or null if not found or mapping fails.
      */
     private Appointment findAppointmentFromQueueTable(JTable table, int selectedRow) {
-        return controller.findAppointmentFromQueueTable(currentUser.getUsername(), selectedRow);
+        return queueStatusStaffTableModel.getAppointmentAt(selectedRow);
     }
 
     /**
@@ -1515,21 +1616,256 @@ public class ConsultationGUI extends JFrame {
             return;
         }
 
-        DefaultTableModel model = (DefaultTableModel) table.getModel();
-        for (int i = 0; i < model.getRowCount(); i++) {
-            // Use the helper to find the appointment corresponding to the *visual* row 'i'
-            Appointment rowAppointment = findAppointmentFromQueueTable(table, i);
-
-            // Check if the appointment for this visual row matches the target appointment's ID
-            if (rowAppointment != null && rowAppointment.getId() == targetAppointment.getId()) {
-                table.setRowSelectionInterval(i, i); // Select the row
-                // Scroll the table viewport to make the selected row visible
-                table.scrollRectToVisible(table.getCellRect(i, 0, true));
-                break; // Found it, no need to continue loop
+        int i = ((AppointmentTableModel) table.getModel()).indexOf(targetAppointment.getId());
+        if (i >= 0) {
+            table.setRowSelectionInterval(i, i); // Select the row
+            // Scroll the table viewport to make the selected row visible
+            table.scrollRectToVisible(table.getCellRect(i, 0, true));
+        }
+    }
+
+    // --- Change Events ---
+
+    // Row orders of the tables, as their full refreshes produce them
+    private static final Comparator<AppointmentTableModel.Row> ROWS_BY_TIME = Comparator
+            .comparing((AppointmentTableModel.Row row) -> row.time).thenComparingInt(row -> row.id);
+    private static final Comparator<AppointmentTableModel.Row> ROWS_IN_QUEUE_ORDER = Comparator
+            .comparing((AppointmentTableModel.Row row) -> !row.priority).thenComparing(ROWS_BY_TIME);
+
+    // Rows to put into a table and ids to take out of it
+    private static final class RowPatch {
+        final List<AppointmentTableModel.Row> rows = new ArrayList<>();
+        final Set<Integer> removed = new HashSet<>();
+    }
+
+    // Notifications to add at the top of the list, newest first, and the oldest sequence
+    // number the inbox still holds
+    private static final class NotificationPatch {
+        final List<NotificationView> added;
+        final long oldestHeld;
+
+        NotificationPatch(List<NotificationView> added, long oldestHeld) {
+            this.added = added;
+            this.oldestHeld = oldestHeld;
+        }
+    }
+
+    // Called by the controller on whatever thread made the change; only records the change
+    // and, for the first change of a burst, starts the refresh timer
+    private void onControllerChange(ChangeEvent event) {
+        switch (event.getType()) {
+            case RELOADED:
+                pendingReload.set(true);
+                break;
+            case NOTIFICATION_ADDED:
+                pendingNotifications.add(event.getUsername());
+                break;
+            default:
+                pendingChanges.put(event.getAppointment().getId(), event);
+                break;
+        }
+        if (refreshScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(refreshTimer::restart);
+        }
+    }
+
+    private void applyPendingChanges() {
+        refreshScheduled.set(false); // Changes from here on start another frame
+        boolean reload = pendingReload.getAndSet(false);
+        List<ChangeEvent> changes = new ArrayList<>();
+        for (Integer id : new ArrayList<>(pendingChanges.keySet())) {
+            ChangeEvent change = pendingChanges.remove(id);
+            if (change != null) changes.add(change);
+        }
+        boolean notified = false;
+        for (Iterator<String> it = pendingNotifications.iterator(); it.hasNext(); ) {
+            String recipient = it.next();
+            it.remove();
+            if (currentUser != null && recipient.equals(currentUser.getUsername())) notified = true;
+        }
+        if (currentUser == null) return;
+        if (reload) {
+            refreshSpecificView(visibleCard); // Every row may be stale
+            return;
+        }
+        switch (visibleCard) {
+            case CARD_MY_APPOINTMENTS:
+                if (!changes.isEmpty()) patchMyAppointmentsTable(myAppointmentsTableModel, changes);
+                break;
+            case CARD_NOTIFICATIONS:
+                if (notified) addNewNotifications(notificationListModel);
+                break;
+            case CARD_QUEUE_STATUS_STAFF:
+                if (!changes.isEmpty()) {
+                    patchQueueStatusStaffTable(queueStatusStaffTableModel, changes);
+                    refreshQueueInfoLabels(completesOrRemoves(changes));
+                }
+                break;
+            case CARD_MANAGE_APPOINTMENTS:
+                if (!changes.isEmpty()) patchManageAppointmentsTable(manageAppointmentsTableModel, changes, currentManageFilter());
+                break;
+        }
+    }
+
+    // Fetches again the student's own changed appointments, and its waiting ones in the
+    // queues that changed, since their positions and waits moved
+    private void patchMyAppointmentsTable(AppointmentTableModel model, List<ChangeEvent> changes) {
+        if (model == null || currentUser == null) return;
+        User user = currentUser;
+        Map<Integer, Appointment> touched = new HashMap<>();
+        Set<Integer> removed = new HashSet<>();
+        Set<String> changedQueues = new HashSet<>();
+        for (ChangeEvent change : changes) {
+            Appointment app = change.getAppointment();
+            changedQueues.add(app.getProfessorOrCounselor().getUsername());
+            if (!app.getStudent().getUsername().equals(user.getUsername())) continue; // Another student's, in a followed queue
+            if (change.getType() == ChangeEvent.Type.APPOINTMENT_REMOVED) removed.add(app.getId());
+            else touched.put(app.getId(), app);
+        }
+        for (AppointmentTableModel.Row row : model.getRows()) {
+            if (row.queuePosition > 0 && changedQueues.contains(row.appointment.getProfessorOrCounselor().getUsername())) {
+                touched.putIfAbsent(row.id, row.appointment);
+            }
+        }
+        if (touched.isEmpty() && removed.isEmpty()) return;
+        runInBackground(() -> {
+            RowPatch patch = new RowPatch();
+            patch.removed.addAll(removed);
+            for (Appointment app : touched.values()) {
+                if (removed.contains(app.getId())) continue;
+                int position = controller.getQueuePosition(app);
+                patch.rows.add(new AppointmentTableModel.Row(app, position, position > 0 ? controller.getWaitTimeAhead(app) : 0));
+            }
+            return patch;
+        }, patch -> {
+            model.patchRows(patch.rows, patch.removed, ROWS_BY_TIME);
+            updateSubscriptions(followedUsernames(user, model.getRows()));
+        });
+    }
+
+    // Puts the changed appointments that are still waiting into the queue table and takes
+    // the others out
+    private void patchQueueStatusStaffTable(AppointmentTableModel model, List<ChangeEvent> changes) {
+        if (model == null || currentUser == null) return;
+        runInBackground(() -> {
+            RowPatch patch = new RowPatch();
+            for (ChangeEvent change : changes) {
+                Appointment app = change.getAppointment();
+                boolean waiting = change.getType() != ChangeEvent.Type.APPOINTMENT_REMOVED
+                        && (app.getStatus().equals("PENDING") || app.getStatus().equals("IN_PROGRESS"))
+                        && controller.getQueuePosition(app) > 0;
+                if (waiting) patch.rows.add(new AppointmentTableModel.Row(app));
+                else patch.removed.add(app.getId());
+            }
+            return patch;
+        }, patch -> model.patchRows(patch.rows, patch.removed, ROWS_IN_QUEUE_ORDER));
+    }
+
+    // Puts the changed appointments that pass the filter into the table and takes the others out
+    private void patchManageAppointmentsTable(AppointmentTableModel model, List<ChangeEvent> changes, String statusFilter) {
+        if (model == null || currentUser == null) return;
+        runInBackground(() -> {
+            RowPatch patch = new RowPatch();
+            for (ChangeEvent change : changes) {
+                Appointment app = change.getAppointment();
+                boolean shown = change.getType() != ChangeEvent.Type.APPOINTMENT_REMOVED
+                        && ("All".equals(statusFilter) || app.getStatus().equalsIgnoreCase(statusFilter));
+                if (shown) patch.rows.add(new AppointmentTableModel.Row(app));
+                else patch.removed.add(app.getId());
+            }
+            return patch;
+        }, patch -> model.patchRows(patch.rows, patch.removed, ROWS_BY_TIME));
+    }
+
+    // Only completing or removing an appointment can change the completed count
+    private static boolean completesOrRemoves(List<ChangeEvent> changes) {
+        for (ChangeEvent change : changes) {
+            if (change.getType() == ChangeEvent.Type.APPOINTMENT_REMOVED
+                    || change.getAppointment().getStatus().equals("COMPLETED")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds the notifications newer than the newest shown at the top of the list and drops
+    // the ones the inbox no longer holds from the bottom
+    private void addNewNotifications(DefaultListModel<NotificationView> listModel) {
+        if (listModel == null || currentUser == null) return;
+        String username = currentUser.getUsername();
+        long from = listModel.isEmpty() ? 0 : listModel.getElementAt(0).seq + 1;
+        runInBackground(() -> {
+            List<Notification> notifications = controller.getUserNotifications(username, from, Long.MAX_VALUE); // Oldest first
+            List<NotificationView> views = new ArrayList<>(notifications.size());
+            for (int i = notifications.size() - 1; i >= 0; i--) {
+                Notification n = notifications.get(i);
+                views.add(new NotificationView(n, controller.isNotificationRead(username, n.getSeq())));
+            }
+            return new NotificationPatch(views, controller.getOldestNotificationSeq(username));
+        }, patch -> {
+            // A full refresh queued before this one may already show some of them
+            long newestShown = listModel.isEmpty() ? -1 : listModel.getElementAt(0).seq;
+            int index = 0;
+            for (NotificationView view : patch.added) {
+                if (view.seq > newestShown) listModel.add(index++, view);
+            }
+            while (!listModel.isEmpty() && listModel.lastElement().seq < patch.oldestHeld) {
+                listModel.remove(listModel.size() - 1);
+            }
+        });
+    }
+
+    // Registers the change listener for exactly the given usernames
+    private void updateSubscriptions(Set<String> usernames) {
+        for (String username : new ArrayList<>(subscriptions)) {
+            if (!usernames.contains(username)) {
+                controller.removeChangeListener(username, changeListener);
+                subscriptions.remove(username);
+            }
+        }
+        for (String username : usernames) {
+            if (subscriptions.add(username)) {
+                controller.addChangeListener(username, changeListener);
             }
         }
     }
 
+    // --- Background Work ---
+
+    // Runs work on the background thread and hands its result to onDone on the EDT. The
+    // window shows a wait cursor until every submitted task has finished. Results for a
+    // user who has logged out meanwhile are dropped.
+    private <T> void runInBackground(Callable<T> work, Consumer<T> onDone) {
+        User user = currentUser;
+        if (pendingTasks++ == 0) {
+            getRootPane().setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        }
+        backgroundExecutor.execute(new SwingWorker<T, Void>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void done() {
+                if (--pendingTasks == 0) {
+                    getRootPane().setCursor(Cursor.getDefaultCursor());
+                }
+                if (currentUser != user) return;
+                try {
+                    onDone.accept(get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    Log.error("Background task failed: " + cause);
+                    JOptionPane.showMessageDialog(ConsultationGUI.this, "Error: " + cause.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+    }
+
     // --- End Helper Methods ---
 } // End of ConsultationGUI class
 
@@ -0,0 +1,112 @@
+package com.consultation.benchmark;
+
+import com.consultation.controller.ConsultationController;
+import com.consultation.model.Appointment;
+import com.consultation.model.BookingRequest;
+import com.consultation.model.User;
+import com.consultation.util.Log;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Term-start booking: N createAppointment calls against one createAppointments batch with the
+ * same requests, each on a fresh controller with a journal open, so every single call waits
+ * for its own flush and the batch for one. Also checks both give the same assignments.
+ *
+ * Usage: BatchBookingBenchmark [professors] [students] [rounds]
+ */
+public class BatchBookingBenchmark {
+    private static final String SUBJECT = "Data Structures";
+
+    public static void main(String[] args) throws Exception {
+        int professors = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int students = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+        Log.setLevel(Log.Level.OFF);
+
+        // The first half of the rounds only warm up; the rest report their median
+        int measured = rounds - rounds / 2;
+        long[] singleNanos = new long[measured];
+        long[] batchNanos = new long[measured];
+        boolean sameAssignments = true;
+        int requestCount = 0;
+        int booked = 0;
+        Path dir = Files.createTempDirectory("batch-booking");
+        for (int round = 0; round < rounds; round++) {
+            ConsultationController single = new ConsultationController();
+            List<BookingRequest> singleRequests = setUp(single, professors, students, round);
+            ConsultationController batch = new ConsultationController();
+            List<BookingRequest> batchRequests = setUp(batch, professors, students, round);
+            requestCount = singleRequests.size();
+            // Opened after the set-up, so only the bookings are journaled
+            Path singleJournal = dir.resolve("single-" + round + ".journal");
+            Path batchJournal = dir.resolve("batch-" + round + ".journal");
+            single.openJournal(singleJournal);
+            batch.openJournal(batchJournal);
+
+            // Collect the set-up garbage so neither side pays for it
+            System.gc();
+            long start = System.nanoTime();
+            List<Appointment> singleResults = new ArrayList<>();
+            for (BookingRequest request : singleRequests) {
+                singleResults.add(single.createAppointment(request.getStudent(), request.getProfessorOrCounselor(),
+                    request.getSubject(), request.getDuration()));
+            }
+            long afterSingle = System.nanoTime();
+            System.gc();
+            long beforeBatch = System.nanoTime();
+            List<Appointment> batchResults = batch.createAppointments(batchRequests);
+            long afterBatch = System.nanoTime();
+
+            if (round >= rounds / 2) {
+                singleNanos[round - rounds / 2] = afterSingle - start;
+                batchNanos[round - rounds / 2] = afterBatch - beforeBatch;
+            }
+            booked = 0;
+            for (int i = 0; i < requestCount; i++) {
+                Appointment a = singleResults.get(i);
+                Appointment b = batchResults.get(i);
+                if (a == null ? b != null : b == null || !a.getAppointmentTime().equals(b.getAppointmentTime())) {
+                    sameAssignments = false;
+                }
+                if (a != null) booked++;
+            }
+            single.close();
+            batch.close();
+            Files.delete(singleJournal);
+            Files.delete(batchJournal);
+        }
+        Files.delete(dir);
+
+        Arrays.sort(singleNanos);
+        Arrays.sort(batchNanos);
+        System.out.printf("%d requests (%d booked), %d professors%n", requestCount, booked, professors);
+        System.out.printf("single calls: %10.2f ms per round (median)%n", singleNanos[measured / 2] / 1e6);
+        System.out.printf("batch:        %10.2f ms per round (median)%n", batchNanos[measured / 2] / 1e6);
+        System.out.printf("same assignments: %s%n", sameAssignments);
+    }
+
+    // Every student asks a random professor for a 15 to 60 minute consultation
+    private static List<BookingRequest> setUp(ConsultationController controller, int professors, int students, int seed) {
+        List<User> professorUsers = new ArrayList<>();
+        for (int i = 0; i < professors; i++) {
+            User professor = controller.registerUser("prof" + i, "pass", "PROFESSOR", "Professor " + i, "");
+            controller.addSubject(professor, SUBJECT);
+            professorUsers.add(professor);
+        }
+        Random random = new Random(seed);
+        List<BookingRequest> requests = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            User student = controller.registerUser("student" + i, "pass", "STUDENT", "Student " + i, "");
+            controller.addSubject(student, SUBJECT);
+            requests.add(new BookingRequest(student, professorUsers.get(random.nextInt(professors)),
+                SUBJECT, 15 * (1 + random.nextInt(4))));
+        }
+        controller.initializeAllTimeSlots();
+        return requests;
+    }
+}
@@ -0,0 +1,81 @@
+package com.consultation.benchmark;
+
+import com.consultation.controller.ConsultationController;
+import com.consultation.controller.NotificationPipeline;
+import com.consultation.model.Notification;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Time producers spend creating notifications: adding them inline to per-user synchronized
+ * lists (the old path) against submitting them to the controller's pipeline. Also prints
+ * the pipeline's backpressure counters after each run.
+ *
+ * Usage: NotificationPipelineBenchmark [notificationsPerThread] [recipients]
+ */
+public class NotificationPipelineBenchmark {
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int recipients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        String[] usernames = new String[recipients];
+        for (int i = 0; i < recipients; i++) {
+            usernames[i] = "user" + i;
+        }
+
+        for (int threads : new int[] {1, 4, 16}) {
+            Map<String, List<Notification>> inbox = new ConcurrentHashMap<>();
+            double inlineNanos = run(threads, perThread, (thread, i) -> {
+                String username = usernames[(thread * 31 + i) % recipients];
+                inbox.computeIfAbsent(username, k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(new Notification("Appointment cancelled"));
+            });
+
+            ConsultationController controller = new ConsultationController();
+            double pipelineNanos = run(threads, perThread, (thread, i) ->
+                controller.createNotification(usernames[(thread * 31 + i) % recipients], "Appointment cancelled"));
+            NotificationPipeline pipeline = controller.getNotificationPipeline();
+            controller.close(); // Delivers the rest and stops the delivery thread
+
+            System.out.printf("%2d producers: inline %6.0f ns/op, pipeline %6.0f ns/op | batches %d (avg %.0f), "
+                    + "throttled %d (%.0f ms), high water %d, delivered %d/%d%n",
+                threads, inlineNanos, pipelineNanos, pipeline.getBatchCount(),
+                (double) pipeline.getDeliveredCount() / Math.max(1, pipeline.getBatchCount()),
+                pipeline.getThrottledCount(), pipeline.getThrottledNanos() / 1e6, pipeline.getHighWaterMark(),
+                pipeline.getDeliveredCount(), pipeline.getSubmittedCount());
+        }
+    }
+
+    private interface Producer {
+        void produce(int thread, int i);
+    }
+
+    // Nanoseconds per produced notification, wall clock over all threads
+    private static double run(int threads, int perThread, Producer producer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        producer.produce(thread, i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        System.gc();
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return (double) (System.nanoTime() - begin) / ((long) threads * perThread);
+    }
+}
@@ -0,0 +1,136 @@
+package com.consultation.benchmark;
+
+import com.consultation.model.Appointment;
+import com.consultation.model.AppointmentTreap;
+import com.consultation.model.AppointmentQueue;
+import com.consultation.model.User;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * Per-operation cost of the priority tier as it grows. Each operation is an insert, a
+ * re-key, a removal by handle or a poll, at a steady tier size. For contrast, the old
+ * approach (FIFO queue re-sorted by copy, sort, clear and re-add after every insert) is
+ * measured on the same sizes.
+ *
+ * Usage: PriorityTierBenchmark [operations per size]
+ */
+public class PriorityTierBenchmark {
+    private static final int[] SIZES = {100, 1_000, 10_000};
+    private static final User STUDENT = new User("student", "pass", "STUDENT", "Student", "");
+    private static final User COUNSELOR = new User("counselor", "pass", "COUNSELOR", "Counselor", "");
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 5, 9, 0);
+
+    private static int nextId = 1;
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        // Warm up both paths
+        treapNanosPerOp(1_000, operations);
+        resortNanosPerOp(1_000, 2_000);
+
+        System.out.printf("%8s %16s %16s%n", "size", "treap ns/op", "re-sort ns/op");
+        for (int size : SIZES) {
+            double treap = treapNanosPerOp(size, operations);
+            double resort = resortNanosPerOp(size, Math.max(200, 2_000_000 / size));
+            System.out.printf("%8d %16.0f %16.0f%n", size, treap, resort);
+        }
+    }
+
+    private static double treapNanosPerOp(int size, int operations) {
+        Random random = new Random(size);
+        AppointmentTreap treap = new AppointmentTreap();
+        Tracked queued = new Tracked();
+        for (int i = 0; i < size; i++) {
+            Appointment appointment = newAppointment(random);
+            treap.offer(appointment);
+            queued.add(appointment);
+        }
+
+        long start = System.nanoTime();
+        for (int op = 0; op < operations; op++) {
+            int kind = op & 3;
+            if (kind == 0) {
+                Appointment appointment = newAppointment(random);
+                treap.offer(appointment);
+                queued.add(appointment);
+            } else if (kind == 1) {
+                Appointment appointment = queued.pick(random);
+                appointment.setAppointmentTime(randomTime(random));
+                treap.update(appointment);
+            } else if (kind == 2) {
+                Appointment appointment = queued.pick(random);
+                queued.remove(appointment);
+                treap.remove(appointment);
+            } else {
+                // Keep the tier at its size: poll the head and put a new arrival in its place
+                Appointment head = treap.poll();
+                queued.remove(head);
+                Appointment appointment = newAppointment(random);
+                treap.offer(appointment);
+                queued.add(appointment);
+            }
+        }
+        return (double) (System.nanoTime() - start) / operations;
+    }
+
+    // Insert plus full re-sort, as the priority tier used to be kept in order
+    private static double resortNanosPerOp(int size, int operations) {
+        Random random = new Random(size);
+        Queue<Appointment> queue = new AppointmentQueue();
+        for (int i = 0; i < size; i++) {
+            queue.offer(newAppointment(random));
+        }
+
+        long start = System.nanoTime();
+        for (int op = 0; op < operations; op++) {
+            queue.poll();
+            queue.offer(newAppointment(random));
+            List<Appointment> ordered = new ArrayList<>(queue);
+            ordered.sort(Comparator.comparing(Appointment::getAppointmentTime));
+            queue.clear();
+            queue.addAll(ordered);
+        }
+        return (double) (System.nanoTime() - start) / operations;
+    }
+
+    private static Appointment newAppointment(Random random) {
+        return new Appointment(nextId++, STUDENT, COUNSELOR, randomTime(random), "Advising", 30);
+    }
+
+    private static LocalDateTime randomTime(Random random) {
+        return START.plusMinutes(15L * random.nextInt(28 * 180));
+    }
+
+    // The queued appointments, with O(1) random pick and removal so the bookkeeping
+    // does not drown out the treap operations
+    private static class Tracked {
+        private final List<Appointment> list = new ArrayList<>();
+        private final Map<Integer, Integer> index = new HashMap<>();
+
+        private void add(Appointment appointment) {
+            index.put(appointment.getId(), list.size());
+            list.add(appointment);
+        }
+
+        private Appointment pick(Random random) {
+            return list.get(random.nextInt(list.size()));
+        }
+
+        private void remove(Appointment appointment) {
+            int at = index.remove(appointment.getId());
+            Appointment last = list.remove(list.size() - 1);
+            if (last != appointment) {
+                list.set(at, last);
+                index.put(last.getId(), at);
+            }
+        }
+    }
+}
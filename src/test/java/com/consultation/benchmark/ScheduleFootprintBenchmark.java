@@ -0,0 +1,69 @@
+package com.consultation.benchmark;
+
+import com.consultation.model.ProviderCalendar;
+import com.consultation.model.TimeSlot;
+import com.consultation.model.User;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Heap taken by provider schedules: one TimeSlot object per 15-minute slot (the old
+ * layout) against one ProviderCalendar per provider.
+ *
+ * Usage: ScheduleFootprintBenchmark [providers] [days]
+ */
+public class ScheduleFootprintBenchmark {
+    public static void main(String[] args) {
+        int providers = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 180;
+        LocalDate today = LocalDate.now();
+        long openUnits = ProviderCalendar.unitMask(LocalTime.of(9, 0), LocalTime.of(12, 0))
+            | ProviderCalendar.unitMask(LocalTime.of(13, 0), LocalTime.of(16, 0));
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < providers; i++) {
+            users.add(new User("counselor" + i, "pass", "COUNSELOR", "Counselor " + i, ""));
+        }
+
+        // Both layouts stay reachable until the end so each measurement only sees its own growth
+        long baseline = usedHeap();
+        Map<String, ProviderCalendar> calendars = new HashMap<>();
+        for (User user : users) {
+            calendars.put(user.getUsername(), new ProviderCalendar(today, days, openUnits, 1));
+        }
+        long calendarBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        Map<String, Map<LocalDate, List<TimeSlot>>> slotObjects = new HashMap<>();
+        for (User user : users) {
+            Map<LocalDate, List<TimeSlot>> schedule = new HashMap<>();
+            for (int d = 0; d < days; d++) {
+                List<TimeSlot> slots = new ArrayList<>();
+                for (LocalTime time = LocalTime.of(9, 0); time.isBefore(LocalTime.of(16, 0)); time = time.plusMinutes(15)) {
+                    if (time.getHour() == 12) continue; // Lunch break
+                    slots.add(new TimeSlot(time, time.plusMinutes(15), user));
+                }
+                schedule.put(today.plusDays(d), slots);
+            }
+            slotObjects.put(user.getUsername(), schedule);
+        }
+        long slotBytes = usedHeap() - baseline;
+
+        System.out.printf("%d providers x %d days%n", providers, days);
+        System.out.printf("TimeSlot lists:     %,14d bytes (%d schedules)%n", slotBytes, slotObjects.size());
+        System.out.printf("ProviderCalendar:   %,14d bytes (%d schedules)%n", calendarBytes, calendars.size());
+        System.out.printf("Reduction:          %14.1fx%n", (double) slotBytes / calendarBytes);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,89 @@
+package com.consultation.benchmark;
+
+import com.consultation.controller.ConsultationController;
+import com.consultation.model.Appointment;
+import com.consultation.model.User;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Save and load times of a controller snapshot with many appointments. Counselors use the
+ * 15-minute grid, so each one takes 168 appointments over the week.
+ *
+ * Usage: SnapshotBenchmark [appointments] [rounds]
+ */
+public class SnapshotBenchmark {
+    public static void main(String[] args) throws Exception {
+        int appointmentCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int counselors = (appointmentCount + 167) / 168;
+        int students = Math.max(1, appointmentCount / 100);
+
+        ConsultationController controller = new ConsultationController();
+        List<User> counselorUsers = new ArrayList<>();
+        for (int i = 0; i < counselors; i++) {
+            counselorUsers.add(controller.registerUser("counselor" + i, "pass", "COUNSELOR", "Counselor " + i, ""));
+        }
+        List<User> studentUsers = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            studentUsers.add(controller.registerUser("student" + i, "pass", "STUDENT", "Student " + i, ""));
+        }
+        controller.refreshTimeSlots(); // Calendars for everyone registered above
+
+        Random random = new Random(42);
+        List<Appointment> booked = new ArrayList<>();
+        for (int i = 0; i < appointmentCount; i++) {
+            booked.add(controller.createAppointment(studentUsers.get(random.nextInt(students)),
+                counselorUsers.get(i % counselors), "Advising", 15));
+        }
+        // Some churn, so queues have gaps and there are notifications to save
+        for (int i = 0; i < booked.size(); i += 10) {
+            controller.cancelAppointment(booked.get(i));
+        }
+        for (int i = 0; i < counselors; i++) {
+            controller.getNextAppointment("counselor" + i);
+        }
+
+        Path dir = Files.createTempDirectory("snapshot-benchmark");
+        Path file = dir.resolve("state.snapshot");
+        long[] saveNanos = new long[rounds];
+        long[] loadNanos = new long[rounds];
+        for (int round = 0; round < rounds; round++) {
+            System.gc();
+            long start = System.nanoTime();
+            controller.saveSnapshot(file);
+            saveNanos[round] = System.nanoTime() - start;
+
+            ConsultationController fresh = new ConsultationController();
+            System.gc();
+            start = System.nanoTime();
+            fresh.loadSnapshot(file);
+            loadNanos[round] = System.nanoTime() - start;
+            fresh.close();
+        }
+
+        // Saving what was loaded must give the same bytes back
+        ConsultationController loaded = new ConsultationController();
+        loaded.loadSnapshot(file);
+        Path again = dir.resolve("again.snapshot");
+        loaded.saveSnapshot(again);
+        boolean identical = Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(again));
+        loaded.close();
+        controller.close();
+
+        Arrays.sort(saveNanos);
+        Arrays.sort(loadNanos);
+        System.out.printf("%d appointments, %d counselors, %d students%n", appointmentCount, counselors, students);
+        System.out.printf("snapshot size: %,12d bytes%n", Files.size(file));
+        System.out.printf("save:          %12.1f ms (median)%n", saveNanos[rounds / 2] / 1e6);
+        System.out.printf("load:          %12.1f ms (median)%n", loadNanos[rounds / 2] / 1e6);
+        System.out.printf("round trip identical: %s%n", identical);
+        Files.delete(file);
+        Files.delete(again);
+        Files.delete(dir);
+    }
+}